@@ -0,0 +1,110 @@
+package com.reactivespring.bulk;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.reactivespring.domain.BulkItemResult;
+import com.reactivespring.domain.BulkItemStatus;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+// Bulk ingestion of an application/x-ndjson upload, one record per line. Lines are parsed and validated one by one,
+// then written batchSize records at a time (one bulkWrite each) with at most `concurrency` batches in flight. Lines
+// are only read from the request as batches complete, so the server holds a bounded number of records whatever the
+// size of the upload. Every non blank line gets a BulkItemResult, in line order.
+@Component
+@Slf4j
+public class BulkIngester {
+
+    private ObjectMapper objectMapper;
+
+    private int batchSize;
+
+    private int concurrency;
+
+    public BulkIngester(ObjectMapper objectMapper,
+                        @Value("${bulk.batchSize:500}") int batchSize,
+                        @Value("${bulk.concurrency:4}") int concurrency) {
+        this.objectMapper = objectMapper;
+        this.batchSize = batchSize;
+        this.concurrency = concurrency;
+    }
+
+    // validator : error messages of a record, empty when it is valid. writer : one result per record, in record order
+    // (line is set here). Batches run concurrently, so two records with the same id in one upload can land in any order
+    public <T> Flux<BulkItemResult> ingest(Flux<String> lines, Class<T> type, Function<T, List<String>> validator,
+                                           Function<List<T>, Mono<List<BulkItemResult>>> writer) {
+        return lines.index()
+                .filter(line -> !line.getT2().isBlank())
+                .map(line -> parse(line.getT1() + 1, line.getT2(), type, validator))
+                .buffer(batchSize)
+                .flatMapSequential(batch -> write(batch, writer), concurrency)
+                .flatMapIterable(Function.identity());
+    }
+
+    private <T> ParsedRecord<T> parse(long line, String json, Class<T> type, Function<T, List<String>> validator) {
+        T record;
+        try {
+            record = objectMapper.readValue(json, type);
+        } catch (JsonProcessingException ex) {
+            return new ParsedRecord<>(line, null, "Malformed record : " + ex.getOriginalMessage());
+        }
+        var errors = validator.apply(record);
+        if (!errors.isEmpty()) {
+            return new ParsedRecord<>(line, null, String.join(",", errors));
+        }
+        return new ParsedRecord<>(line, record, null);
+    }
+
+    private <T> Mono<List<BulkItemResult>> write(List<ParsedRecord<T>> batch,
+                                                 Function<List<T>, Mono<List<BulkItemResult>>> writer) {
+        List<T> records = batch.stream()
+                .filter(parsedRecord -> parsedRecord.record != null)
+                .map(parsedRecord -> parsedRecord.record)
+                .collect(Collectors.toList());
+        var written = records.isEmpty() ? Mono.just(List.<BulkItemResult>of()) : writer.apply(records)
+                // e.g. Mongo unreachable : the whole batch failed, the next ones are still attempted
+                .onErrorResume(ex -> {
+                    log.error("Bulk batch of {} records failed : {}", records.size(), ex.getMessage());
+                    return Mono.just(records.stream()
+                            .map(record -> BulkItemResult.failed(null, ex.getMessage()))
+                            .collect(Collectors.toList()));
+                });
+        return written.map(results -> {
+            Iterator<BulkItemResult> writtenResults = results.iterator();
+            List<BulkItemResult> batchResults = new ArrayList<>(batch.size());
+            for (ParsedRecord<T> parsedRecord : batch) {
+                if (parsedRecord.record == null) {
+                    batchResults.add(new BulkItemResult(parsedRecord.line, null, BulkItemStatus.INVALID, parsedRecord.error));
+                } else {
+                    var result = writtenResults.next();
+                    result.setLine(parsedRecord.line);
+                    batchResults.add(result);
+                }
+            }
+            return batchResults;
+        });
+    }
+
+    // a parsed and valid record, or the reason why it is not
+    private static class ParsedRecord<T> {
+
+        private final long line;
+        private final T record;
+        private final String error;
+
+        private ParsedRecord(long line, T record, String error) {
+            this.line = line;
+            this.record = record;
+            this.error = error;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.reactivespring.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ListableBeanFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentProperty;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.data.repository.core.RepositoryInformation;
+import org.springframework.data.repository.query.parser.Part;
+import org.springframework.data.repository.query.parser.PartTree;
+import org.springframework.data.repository.support.Repositories;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+// Creates the indexes declared on the @Document classes (@Indexed, @CompoundIndex) at startup, since Spring Boot leaves
+// auto index creation off. ensureIndex is a no-op for an index that already exists, so restarts are cheap. Then every
+// derived query method of the repositories is checked against the collection's indexes, with a warning when none
+// starts with one of the fields it filters on (that query is a collection scan). That check is also available on its own
+// through findUncoveredQueryMethods.
+@Component
+@Slf4j
+public class MongoIndexInitializer implements ApplicationRunner {
+
+    private ReactiveMongoTemplate reactiveMongoTemplate;
+
+    private MongoMappingContext mongoMappingContext;
+
+    private ListableBeanFactory beanFactory;
+
+    @Value("${mongoIndexes.timeout:30s}")
+    private Duration timeout;
+
+    public MongoIndexInitializer(ReactiveMongoTemplate reactiveMongoTemplate, MongoMappingContext mongoMappingContext,
+                                 ListableBeanFactory beanFactory) {
+        this.reactiveMongoTemplate = reactiveMongoTemplate;
+        this.mongoMappingContext = mongoMappingContext;
+        this.beanFactory = beanFactory;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        var indexResolver = new MongoPersistentEntityIndexResolver(mongoMappingContext);
+        for (MongoPersistentEntity<?> entity : documentEntities()) {
+            var indexOps = reactiveMongoTemplate.indexOps(entity.getType());
+            // a failure (e.g. an existing index with the same name but other options) is logged, the app still starts
+            Flux.fromIterable(indexResolver.resolveIndexFor(entity.getTypeInformation()))
+                    .concatMap(indexOps::ensureIndex)
+                    .doOnNext(indexName -> log.info("Index {} ensured on collection {}", indexName, entity.getCollection()))
+                    .onErrorResume(ex -> {
+                        log.error("Index creation failed on collection {} : {}", entity.getCollection(), ex.getMessage());
+                        return Mono.empty();
+                    })
+                    .blockLast(timeout);
+        }
+        findUncoveredQueryMethods()
+                .onErrorResume(ex -> {
+                    log.error("Index check failed : {}", ex.getMessage());
+                    return Mono.empty();
+                })
+                .block(timeout);
+    }
+
+    // Repository.method of every derived query that no index of its collection can serve, each one logged as a warning
+    public Mono<List<String>> findUncoveredQueryMethods() {
+        var repositories = new Repositories(beanFactory);
+        return Flux.fromIterable(documentEntities())
+                .concatMap(entity -> repositories.getRepositoryInformationFor(entity.getType())
+                        .map(repositoryInformation -> reactiveMongoTemplate.indexOps(entity.getType())
+                                .getIndexInfo()
+                                .collectList()
+                                .flatMapIterable(indexInfos -> checkQueryMethods(repositoryInformation, entity, indexInfos)))
+                        .orElseGet(Flux::empty))
+                .collectList();
+    }
+
+    private List<MongoPersistentEntity<?>> documentEntities() {
+        return mongoMappingContext.getPersistentEntities()
+                .stream()
+                .filter(entity -> entity.isAnnotationPresent(Document.class))
+                .collect(Collectors.toList());
+    }
+
+    private List<String> checkQueryMethods(RepositoryInformation repositoryInformation, MongoPersistentEntity<?> entity,
+                                           List<IndexInfo> indexInfos) {
+        Set<String> leadingIndexFields = indexInfos.stream()
+                .map(indexInfo -> indexInfo.getIndexFields().get(0).getKey())
+                .collect(Collectors.toSet());
+        List<String> uncovered = new ArrayList<>();
+        for (Method method : repositoryInformation.getQueryMethods()) {
+            if (method.isAnnotationPresent(Query.class)) {
+                continue;
+            }
+            PartTree partTree;
+            try {
+                partTree = new PartTree(method.getName(), entity.getType());
+            } catch (RuntimeException ex) {
+                // not a derived query, nothing to check
+                continue;
+            }
+            Set<String> queriedFields = partTree.getParts()
+                    .stream()
+                    .map(Part::getProperty)
+                    .map(propertyPath -> {
+                        MongoPersistentProperty property = entity.getPersistentProperty(propertyPath.getSegment());
+                        return property == null ? propertyPath.getSegment() : property.getFieldName();
+                    })
+                    .collect(Collectors.toSet());
+            if (!queriedFields.isEmpty() && queriedFields.stream().noneMatch(leadingIndexFields::contains)) {
+                var queryMethod = repositoryInformation.getRepositoryInterface().getSimpleName() + "." + method.getName();
+                log.warn("No index on collection {} for {} : it filters on {} and will scan the collection",
+                        entity.getCollection(), queryMethod, queriedFields);
+                uncovered.add(queryMethod);
+            }
+        }
+        return uncovered;
+    }
+}
@@ -0,0 +1,27 @@
+package com.reactivespring.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// outcome of one record of a bulk upload
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkItemResult {
+
+    // line of the record in the upload, starting at 1
+    private long line;
+    // id of the written document, null when nothing was written
+    private String id;
+    private BulkItemStatus status;
+    private String error;
+
+    public static BulkItemResult written(String id, BulkItemStatus status) {
+        return new BulkItemResult(0, id, status, null);
+    }
+
+    public static BulkItemResult failed(String id, String error) {
+        return new BulkItemResult(0, id, BulkItemStatus.FAILED, error);
+    }
+}
@@ -0,0 +1,10 @@
+package com.reactivespring.domain;
+
+public enum BulkItemStatus {
+    CREATED,
+    UPDATED,
+    // rejected before being written : malformed json or failed validation
+    INVALID,
+    // rejected by Mongo, or its whole batch failed
+    FAILED
+}
@@ -0,0 +1,54 @@
+package com.reactivespring.repository;
+
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.schema.JsonSchemaObject;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+// Keyset pagination on _id : a page is the next `limit` documents after the last _id of the previous page in _id order,
+// so every page is a range scan on the _id index whatever its depth (no skip). The cursor handed to clients is the
+// last _id, base64url encoded so that it stays opaque.
+public final class IdKeyset {
+
+    private IdKeyset() {
+    }
+
+    // limit 0 means no limit (whole collection after afterId, for streaming)
+    public static Query pageQuery(String afterId, int limit) {
+        var query = new Query()
+                .with(Sort.by(Sort.Direction.ASC, "_id"))
+                .limit(limit);
+        if (afterId != null) {
+            query.addCriteria(after(afterId));
+        }
+        return query;
+    }
+
+    // ids are a mix of generated ObjectIds and plain strings given by clients. An id that is a valid ObjectId hex string
+    // is stored as an ObjectId, and in _id order every string comes before every ObjectId. $gt only compares values of
+    // the same type, so after a string id the ObjectIds have to be added explicitly
+    static Criteria after(String afterId) {
+        if (ObjectId.isValid(afterId)) {
+            return Criteria.where("_id").gt(new ObjectId(afterId));
+        }
+        return new Criteria().orOperator(Criteria.where("_id").gt(afterId),
+                Criteria.where("_id").type(JsonSchemaObject.Type.objectIdType()));
+    }
+
+    public static String encodeCursor(String lastId) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(lastId.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // IllegalArgumentException when the cursor was not produced by encodeCursor
+    public static String decodeCursor(String cursor) {
+        var afterId = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        if (afterId.isBlank()) {
+            throw new IllegalArgumentException("Empty cursor");
+        }
+        return afterId;
+    }
+}
@@ -0,0 +1,99 @@
+package com.reactivespring.streaming;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.ReactiveHttpOutputMessage;
+import org.springframework.stereotype.Component;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Function;
+
+// Writes a Flux as application/x-ndjson or text/event-stream, flushed every batchSize elements or every flushInterval
+// (whichever comes first) instead of once per element like the default streaming encoders. Elements are only pulled
+// as the connection takes them (see TimedBatcher), so the server holds at most one batch being filled and the batch
+// being written per response whatever the result size, and a client that reads slowly just slows the stream down.
+@Component
+public class BatchedStreamWriter {
+
+    public static final List<MediaType> STREAMING_MEDIA_TYPES = List.of(MediaType.APPLICATION_NDJSON, MediaType.TEXT_EVENT_STREAM);
+
+    private static final byte[] NEW_LINE = "\n".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] SSE_ID = "id:".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] SSE_DATA = "data:".getBytes(StandardCharsets.UTF_8);
+
+    private ObjectMapper objectMapper;
+
+    private int batchSize;
+
+    private Duration flushInterval;
+
+    public BatchedStreamWriter(ObjectMapper objectMapper,
+                               @Value("${streaming.batchSize:100}") int batchSize,
+                               @Value("${streaming.flushInterval:50ms}") Duration flushInterval) {
+        this.objectMapper = objectMapper;
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+    }
+
+    // streaming media type asked for by the client, null when it prefers plain json (or any type)
+    public static MediaType negotiate(List<MediaType> acceptedMediaTypes) {
+        for (MediaType acceptedMediaType : acceptedMediaTypes) {
+            for (MediaType streamingMediaType : STREAMING_MEDIA_TYPES) {
+                if (streamingMediaType.equalsTypeAndSubtype(acceptedMediaType)) {
+                    return streamingMediaType;
+                }
+            }
+            if (acceptedMediaType.includes(MediaType.APPLICATION_JSON)) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    // eventId gives the SSE id of an element (the cursor to resume after it with Last-Event-ID), null for no id
+    public <T> Mono<Void> write(ReactiveHttpOutputMessage outputMessage, MediaType mediaType, Flux<T> elements,
+                                Function<T, String> eventId) {
+        boolean serverSentEvents = MediaType.TEXT_EVENT_STREAM.equalsTypeAndSubtype(mediaType);
+        outputMessage.getHeaders().setContentType(mediaType);
+        var bufferFactory = outputMessage.bufferFactory();
+        // each inner publisher is flushed once written : one flush per batch
+        return outputMessage.writeAndFlushWith(TimedBatcher.batch(elements, batchSize, flushInterval)
+                .map(batch -> Mono.just(encode(batch, serverSentEvents, eventId, bufferFactory))));
+    }
+
+    private <T> DataBuffer encode(List<T> batch, boolean serverSentEvents, Function<T, String> eventId,
+                                  DataBufferFactory bufferFactory) {
+        var outputStream = new ByteArrayOutputStream(batch.size() * 256);
+        try {
+            for (T element : batch) {
+                if (serverSentEvents) {
+                    if (eventId != null) {
+                        outputStream.write(SSE_ID);
+                        outputStream.write(eventId.apply(element).getBytes(StandardCharsets.UTF_8));
+                        outputStream.write(NEW_LINE);
+                    }
+                    outputStream.write(SSE_DATA);
+                    outputStream.write(objectMapper.writeValueAsBytes(element));
+                    outputStream.write(NEW_LINE);
+                    outputStream.write(NEW_LINE);
+                } else {
+                    outputStream.write(objectMapper.writeValueAsBytes(element));
+                    outputStream.write(NEW_LINE);
+                }
+            }
+        } catch (IOException ex) {
+            throw Exceptions.propagate(ex);
+        }
+        return bufferFactory.wrap(outputStream.toByteArray());
+    }
+}
@@ -0,0 +1,195 @@
+package com.reactivespring.streaming;
+
+import org.reactivestreams.Subscription;
+import reactor.core.CoreSubscriber;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Operators;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.context.Context;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Batches of up to batchSize elements, closed when full or flushInterval after their first element, like
+// Flux.bufferTimeout but driven by demand. In Reactor 3.4 bufferTimeout (and windowTimeout) fail with an overflow error
+// when the timer closes a batch nobody requested, i.e. as soon as a client reads slower than the flush interval. Here a
+// due batch waits for a request instead, and upstream is only asked for what fits in the current batch : a slow client
+// holds the source where it is, with at most batchSize elements in memory.
+final class TimedBatcher<T> implements CoreSubscriber<T>, Subscription {
+
+    private final CoreSubscriber<? super List<T>> actual;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final Scheduler scheduler;
+
+    // serializes the emissions of onNext, request and the flush timer (one drain loop at a time)
+    private final AtomicInteger wip = new AtomicInteger();
+    private final AtomicLong requested = new AtomicLong();
+
+    private Subscription upstream;
+
+    // guarded by this
+    private List<T> batch;
+    private Disposable flushTimer;
+    private boolean flushDue;
+
+    private volatile boolean done;
+    private volatile Throwable error;
+    private volatile boolean cancelled;
+
+    private TimedBatcher(CoreSubscriber<? super List<T>> actual, int batchSize, Duration flushInterval, Scheduler scheduler) {
+        this.actual = actual;
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = flushInterval.toNanos();
+        this.scheduler = scheduler;
+    }
+
+    static <T> Flux<List<T>> batch(Flux<T> elements, int batchSize, Duration flushInterval) {
+        return Flux.from(subscriber -> elements.subscribe(new TimedBatcher<>(Operators.toCoreSubscriber(subscriber),
+                batchSize, flushInterval, Schedulers.parallel())));
+    }
+
+    @Override
+    public Context currentContext() {
+        return actual.currentContext();
+    }
+
+    @Override
+    public void onSubscribe(Subscription subscription) {
+        if (Operators.validate(upstream, subscription)) {
+            upstream = subscription;
+            actual.onSubscribe(this);
+            // the first batch is filled while downstream gets ready for it
+            subscription.request(batchSize);
+        }
+    }
+
+    @Override
+    public void onNext(T element) {
+        synchronized (this) {
+            if (cancelled) {
+                return;
+            }
+            if (batch == null) {
+                var timedBatch = new ArrayList<T>(batchSize);
+                batch = timedBatch;
+                flushTimer = scheduler.schedule(() -> flushDue(timedBatch), flushIntervalNanos, TimeUnit.NANOSECONDS);
+            }
+            batch.add(element);
+        }
+        drain();
+    }
+
+    // a timer that fires while its batch is being emitted must not mark the next batch as due
+    private void flushDue(List<T> timedBatch) {
+        synchronized (this) {
+            if (batch != timedBatch) {
+                return;
+            }
+            flushDue = true;
+        }
+        drain();
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        error = throwable;
+        done = true;
+        drain();
+    }
+
+    @Override
+    public void onComplete() {
+        done = true;
+        drain();
+    }
+
+    @Override
+    public void request(long n) {
+        if (Operators.validate(n)) {
+            requested.getAndUpdate(current -> Operators.addCap(current, n));
+            drain();
+        }
+    }
+
+    @Override
+    public void cancel() {
+        cancelled = true;
+        upstream.cancel();
+        synchronized (this) {
+            disposeFlushTimer();
+            batch = null;
+        }
+    }
+
+    private void drain() {
+        if (wip.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        while (true) {
+            while (true) {
+                if (cancelled) {
+                    return;
+                }
+                // like bufferTimeout : the batch being filled is dropped on error
+                var failure = error;
+                if (failure != null) {
+                    cancelled = true;
+                    synchronized (this) {
+                        disposeFlushTimer();
+                        batch = null;
+                    }
+                    actual.onError(failure);
+                    return;
+                }
+                List<T> ready = null;
+                boolean completed = false;
+                synchronized (this) {
+                    boolean pending = batch != null && !batch.isEmpty();
+                    if (pending && requested.get() > 0 && (batch.size() >= batchSize || flushDue || done)) {
+                        ready = batch;
+                        batch = null;
+                        flushDue = false;
+                        disposeFlushTimer();
+                    } else if (!pending && done) {
+                        completed = true;
+                    }
+                }
+                if (ready != null) {
+                    if (requested.get() != Long.MAX_VALUE) {
+                        requested.decrementAndGet();
+                    }
+                    actual.onNext(ready);
+                    if (!done) {
+                        upstream.request(ready.size());
+                    }
+                    continue;
+                }
+                if (completed) {
+                    cancelled = true;
+                    actual.onComplete();
+                    return;
+                }
+                break;
+            }
+            missed = wip.addAndGet(-missed);
+            if (missed == 0) {
+                return;
+            }
+        }
+    }
+
+    private void disposeFlushTimer() {
+        if (flushTimer != null) {
+            flushTimer.dispose();
+            flushTimer = null;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.reactivespring.streaming;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TimedBatcherTest {
+
+    @DisplayName("SlowSubscriberCompletes")
+    @Test
+    void test_batch_SlowSubscriber() {
+        // given : 5 elements 10ms apart, batches of 2 flushed after 50ms
+        var requestedFromSource = new AtomicLong();
+
+        // when/then : the subscriber requests nothing for a long time, twice
+        StepVerifier.withVirtualTime(() -> TimedBatcher.batch(Flux.range(1, 5)
+                                .delayElements(Duration.ofMillis(10))
+                                .doOnRequest(requestedFromSource::addAndGet), 2, Duration.ofMillis(50)), 0)
+                .expectSubscription()
+                .thenAwait(Duration.ofSeconds(10))
+                // the flush timer found no demand : no overflow, and the source was asked for one batch only
+                .then(() -> assertEquals(2, requestedFromSource.get()))
+                .thenRequest(1)
+                .expectNext(List.of(1, 2))
+                .thenAwait(Duration.ofSeconds(10))
+                .thenRequest(10)
+                .expectNext(List.of(3, 4))
+                .thenAwait(Duration.ofMillis(100))
+                .expectNext(List.of(5))
+                .verifyComplete();
+    }
+
+    @DisplayName("PartialBatchFlushedOnTime")
+    @Test
+    void test_batch_FlushInterval() {
+        StepVerifier.withVirtualTime(() -> TimedBatcher.batch(Flux.just(1, 2).concatWith(Flux.never()), 10,
+                        Duration.ofMillis(50)))
+                .expectSubscription()
+                .expectNoEvent(Duration.ofMillis(49))
+                .thenAwait(Duration.ofMillis(1))
+                .expectNext(List.of(1, 2))
+                .thenCancel()
+                .verify();
+    }
+
+    @DisplayName("ErrorIsPropagated")
+    @Test
+    void test_batch_Error() {
+        StepVerifier.create(TimedBatcher.batch(Flux.just(1, 2, 3).concatWith(Flux.error(new IllegalStateException("boom"))),
+                        2, Duration.ofSeconds(1)))
+                .expectNext(List.of(1, 2))
+                .expectErrorMessage("boom")
+                .verify();
+    }
+}
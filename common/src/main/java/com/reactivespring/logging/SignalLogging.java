@@ -0,0 +1,87 @@
+package com.reactivespring.logging;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.server.PathContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+
+// Replacement for .log() on request paths : signals are only logged for requests that ask for it (debug header),
+// match one of the configured path patterns, or fall in the sampled percentage. With signalLogging.enabled=false
+// (the default) the publishers are returned as they are, so tracing adds no operator and no allocation.
+@Component
+@Slf4j
+public class SignalLogging implements WebFilter {
+
+    private static final String CONTEXT_KEY = SignalLogging.class.getName() + ".traced";
+
+    private final boolean enabled;
+    private final String header;
+    private final double sampleRate;
+    private final List<PathPattern> pathPatterns;
+
+    public SignalLogging(@Value("${signalLogging.enabled:false}") boolean enabled,
+                         @Value("${signalLogging.header:X-Debug-Signals}") String header,
+                         @Value("${signalLogging.sampleRate:0.0}") double sampleRate,
+                         @Value("${signalLogging.paths:}") List<String> paths) {
+        this.enabled = enabled;
+        this.header = header;
+        this.sampleRate = sampleRate;
+        this.pathPatterns = paths.stream()
+                .filter(path -> !path.isBlank())
+                .map(PathPatternParser.defaultInstance::parse)
+                .collect(Collectors.toList());
+        if (enabled) {
+            log.info("Signal logging available, header : {}, sampleRate : {}, paths : {}", header, sampleRate, paths);
+        }
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        if (!enabled || !isTraced(exchange)) {
+            return chain.filter(exchange);
+        }
+        return chain.filter(exchange)
+                .contextWrite(context -> context.put(CONTEXT_KEY, Boolean.TRUE));
+    }
+
+    // category is the logger name the signals are logged under
+    public <T> Flux<T> flux(Flux<T> source, String category) {
+        if (!enabled) {
+            return source;
+        }
+        return Flux.deferContextual(contextView -> contextView.hasKey(CONTEXT_KEY) ? source.log(category) : source);
+    }
+
+    public <T> Mono<T> mono(Mono<T> source, String category) {
+        if (!enabled) {
+            return source;
+        }
+        return Mono.deferContextual(contextView -> contextView.hasKey(CONTEXT_KEY) ? source.log(category) : source);
+    }
+
+    private boolean isTraced(ServerWebExchange exchange) {
+        if ("true".equalsIgnoreCase(exchange.getRequest().getHeaders().getFirst(header))) {
+            return true;
+        }
+        if (!pathPatterns.isEmpty()) {
+            PathContainer path = exchange.getRequest().getPath().pathWithinApplication();
+            for (PathPattern pathPattern : pathPatterns) {
+                if (pathPattern.matches(path)) {
+                    return true;
+                }
+            }
+        }
+        return sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate;
+    }
+}
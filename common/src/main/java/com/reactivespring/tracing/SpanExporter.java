@@ -0,0 +1,136 @@
+package com.reactivespring.tracing;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Finished, sampled spans go to the tracing.spans logger (exporter: log), or are batched to a Zipkin compatible
+// collector (exporter: zipkin, Zipkin v2 json). Spans are queued without blocking and dropped when the collector
+// falls behind : tracing must never slow requests down. Dropped spans are counted as tracing.spans.dropped
+@Component
+@Slf4j
+public class SpanExporter implements MeterBinder {
+
+    private static final Logger spanLog = LoggerFactory.getLogger("tracing.spans");
+
+    private final String serviceName;
+
+    private final String exporter;
+
+    private final int batchSize;
+
+    private final Duration timeout;
+
+    private final BlockingQueue<Map<String, Object>> queue;
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    private Disposable subscription;
+
+    public SpanExporter(@Value("${spring.application.name}") String serviceName,
+                        @Value("${tracing.exporter:log}") String exporter,
+                        @Value("${tracing.zipkin.url:http://localhost:9411/api/v2/spans}") String zipkinUrl,
+                        @Value("${tracing.zipkin.batchSize:100}") int batchSize,
+                        @Value("${tracing.zipkin.queueSize:2048}") int queueSize,
+                        @Value("${tracing.zipkin.flushInterval:1s}") Duration flushInterval,
+                        @Value("${tracing.zipkin.timeout:5s}") Duration timeout) {
+        this.serviceName = serviceName;
+        this.exporter = exporter;
+        this.batchSize = batchSize;
+        this.timeout = timeout;
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+        if ("zipkin".equals(exporter)) {
+            var webClient = WebClient.create(zipkinUrl);
+            // ticks arriving while a flush is in progress are skipped (the next flush drains the queue anyway) : an
+            // overflowing interval would end the subscription and stop the export for good
+            subscription = Flux.interval(flushInterval)
+                    .onBackpressureDrop()
+                    .concatMap(tick -> flush(webClient))
+                    .subscribe();
+            log.info("Spans exported to {} every {}", zipkinUrl, flushInterval);
+        }
+    }
+
+    // kind : SERVER or CLIENT. Timestamps and durations in microseconds, as Zipkin wants them
+    public void export(TraceContext traceContext, String kind, String name, long timestampMicros, long durationMicros,
+                       Map<String, String> tags) {
+        if (!traceContext.isSampled() || "none".equals(exporter)) {
+            return;
+        }
+        Map<String, Object> span = new LinkedHashMap<>();
+        span.put("traceId", traceContext.getTraceId());
+        span.put("id", traceContext.getSpanId());
+        if (traceContext.getParentSpanId() != null) {
+            span.put("parentId", traceContext.getParentSpanId());
+        }
+        span.put("kind", kind);
+        span.put("name", name);
+        span.put("timestamp", timestampMicros);
+        span.put("duration", Math.max(1, durationMicros));
+        span.put("localEndpoint", Map.of("serviceName", serviceName));
+        span.put("tags", tags);
+        if ("zipkin".equals(exporter)) {
+            if (!queue.offer(span)) {
+                dropped.incrementAndGet();
+            }
+        } else {
+            spanLog.info("trace={} span={} parent={} kind={} name=\"{}\" duration={}us tags={}", traceContext.getTraceId(),
+                    traceContext.getSpanId(), traceContext.getParentSpanId(), kind, name, durationMicros, tags);
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("tracing.spans.dropped", dropped, AtomicLong::get)
+                .description("Sampled spans dropped because the export queue was full")
+                .register(registry);
+    }
+
+    private Mono<Void> flush(WebClient webClient) {
+        List<Map<String, Object>> spans = new ArrayList<>(batchSize);
+        queue.drainTo(spans, batchSize);
+        if (spans.isEmpty()) {
+            return Mono.empty();
+        }
+        return webClient.post()
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(spans)
+                .retrieve()
+                .toBodilessEntity()
+                .then()
+                // a hung collector must not hold the next flushes
+                .timeout(timeout)
+                // the collector being down or slow loses these spans, not the next ones
+                .onErrorResume(ex -> {
+                    log.warn("{} spans not exported : {}", spans.size(), ex.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    @PreDestroy
+    public void dispose() {
+        if (subscription != null) {
+            subscription.dispose();
+        }
+    }
+}
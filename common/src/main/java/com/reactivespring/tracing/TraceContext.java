@@ -0,0 +1,91 @@
+package com.reactivespring.tracing;
+
+import lombok.Getter;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+// Trace and span ids of the current span, in W3C Trace Context form (traceparent: 00-<traceId>-<spanId>-<flags>).
+// Carried in the Reactor Context under TraceContext.class, never in a ThreadLocal : the operators of a request hop
+// threads freely
+@Getter
+public class TraceContext {
+
+    public static final String TRACEPARENT = "traceparent";
+
+    private static final String VERSION = "00";
+    private static final String INVALID_TRACE_ID = "00000000000000000000000000000000";
+    private static final String INVALID_SPAN_ID = "0000000000000000";
+
+    private final String traceId;
+    private final String spanId;
+    // null for the root span of a trace
+    private final String parentSpanId;
+    // unsampled spans are propagated (the downstream services follow the decision) but never exported
+    private final boolean sampled;
+
+    private TraceContext(String traceId, String spanId, String parentSpanId, boolean sampled) {
+        this.traceId = traceId;
+        this.spanId = spanId;
+        this.parentSpanId = parentSpanId;
+        this.sampled = sampled;
+    }
+
+    public static TraceContext root(boolean sampled) {
+        var random = ThreadLocalRandom.current();
+        return new TraceContext(hex(random.nextLong()) + hex(random.nextLong()), newSpanId(), null, sampled);
+    }
+
+    // null when the header is absent or malformed : the request then starts a new trace
+    public static TraceContext fromTraceparent(String traceparent) {
+        if (traceparent == null || traceparent.length() != 55) {
+            return null;
+        }
+        var parts = traceparent.split("-");
+        if (parts.length != 4 || !VERSION.equals(parts[0]) || !isHex(parts[1], 32) || !isHex(parts[2], 16)
+                || !isHex(parts[3], 2) || INVALID_TRACE_ID.equals(parts[1]) || INVALID_SPAN_ID.equals(parts[2])) {
+            return null;
+        }
+        var sampled = (Integer.parseInt(parts[3], 16) & 1) == 1;
+        return new TraceContext(parts[1], parts[2], null, sampled);
+    }
+
+    // a span of the same trace, started by this one
+    public TraceContext child() {
+        return new TraceContext(traceId, newSpanId(), spanId, sampled);
+    }
+
+    public String traceparent() {
+        return VERSION + "-" + traceId + "-" + spanId + (sampled ? "-01" : "-00");
+    }
+
+    @Override
+    public String toString() {
+        return traceparent();
+    }
+
+    private static String newSpanId() {
+        long spanId;
+        do {
+            spanId = ThreadLocalRandom.current().nextLong();
+        } while (spanId == 0);
+        return hex(spanId);
+    }
+
+    private static String hex(long value) {
+        var hex = Long.toHexString(value);
+        return "0".repeat(16 - hex.length()) + hex;
+    }
+
+    private static boolean isHex(String value, int length) {
+        if (value.length() != length) {
+            return false;
+        }
+        for (int index = 0; index < length; index++) {
+            var character = value.charAt(index);
+            if ((character < '0' || character > '9') && (character < 'a' || character > 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
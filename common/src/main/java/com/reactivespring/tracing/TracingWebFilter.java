@@ -0,0 +1,87 @@
+package com.reactivespring.tracing;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.HandlerMapping;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import org.springframework.web.util.pattern.PathPattern;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Server span of every request : continues the trace of an incoming traceparent header (and its sampling decision),
+// or starts one sampled at tracing.sampleRate. The span is put in the Reactor Context, where outgoing calls find their
+// parent, and its trace id is returned in X-Trace-Id to find the trace of a slow response
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class TracingWebFilter implements WebFilter {
+
+    public static final String TRACE_ID_HEADER = "X-Trace-Id";
+
+    private final boolean enabled;
+
+    private final double sampleRate;
+
+    private final SpanExporter spanExporter;
+
+    public TracingWebFilter(@Value("${tracing.enabled:true}") boolean enabled,
+                            @Value("${tracing.sampleRate:0.1}") double sampleRate,
+                            SpanExporter spanExporter) {
+        this.enabled = enabled;
+        this.sampleRate = sampleRate;
+        this.spanExporter = spanExporter;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        if (!enabled) {
+            return chain.filter(exchange);
+        }
+        var parent = TraceContext.fromTraceparent(exchange.getRequest().getHeaders().getFirst(TraceContext.TRACEPARENT));
+        var span = parent != null
+                ? parent.child()
+                : TraceContext.root(sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate);
+        exchange.getResponse().getHeaders().set(TRACE_ID_HEADER, span.getTraceId());
+
+        var traced = chain.filter(exchange);
+        if (span.isSampled()) {
+            var timestampMicros = ChronoUnit.MICROS.between(Instant.EPOCH, Instant.now());
+            var startNanos = System.nanoTime();
+            traced = traced.doFinally(signalType -> spanExporter.export(span, "SERVER", name(exchange), timestampMicros,
+                    (System.nanoTime() - startNanos) / 1000, tags(exchange, signalType)));
+        }
+        return traced.contextWrite(context -> context.put(TraceContext.class, span));
+    }
+
+    // route pattern rather than path : GET /v1/movies/{id}
+    private static String name(ServerWebExchange exchange) {
+        PathPattern pattern = exchange.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return exchange.getRequest().getMethodValue() + " "
+                + (pattern != null ? pattern.getPatternString() : exchange.getRequest().getPath().value());
+    }
+
+    private static Map<String, String> tags(ServerWebExchange exchange, SignalType signalType) {
+        ServerHttpResponse response = exchange.getResponse();
+        Map<String, String> tags = new LinkedHashMap<>();
+        tags.put("http.path", exchange.getRequest().getPath().value());
+        if (response.getRawStatusCode() != null) {
+            tags.put("http.status_code", String.valueOf(response.getRawStatusCode()));
+        }
+        if (signalType == SignalType.ON_ERROR) {
+            tags.put("error", "true");
+        } else if (signalType == SignalType.CANCEL) {
+            tags.put("cancelled", "true");
+        }
+        return tags;
+    }
+}
@@ -0,0 +1,59 @@
+package com.reactivespring.logging;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class SignalLoggingTest {
+
+    @DisplayName("DisabledReturnsSourceAsIs")
+    @Test
+    void test_signalLogging_Disabled() {
+        // given
+        var signalLogging = new SignalLogging(false, "X-Debug-Signals", 1.0, List.of("/**"));
+        var flux = Flux.just("A", "B");
+        var mono = Mono.just("A");
+
+        // when/then : no operator added at all
+        assertSame(flux, signalLogging.flux(flux, "signals.test"));
+        assertSame(mono, signalLogging.mono(mono, "signals.test"));
+    }
+
+    @DisplayName("OnlyTracedRequestsAreLogged")
+    @Test
+    void test_signalLogging_Header() {
+        // given
+        var signalLogging = new SignalLogging(true, "X-Debug-Signals", 0.0, List.of("/v1/movies/**"));
+        var traced = new AtomicReference<Boolean>();
+        WebFilterChain chain = exchange -> Mono.deferContextual(contextView -> {
+            traced.set(contextView.size() > 0);
+            return Mono.empty();
+        });
+
+        // when/then : header
+        StepVerifier.create(signalLogging.filter(MockServerWebExchange.from(MockServerHttpRequest.get("/v1/stats")
+                        .header("X-Debug-Signals", "true")), chain))
+                .verifyComplete();
+        assertSame(Boolean.TRUE, traced.get());
+
+        // path pattern
+        StepVerifier.create(signalLogging.filter(MockServerWebExchange.from(MockServerHttpRequest.get("/v1/movies/abc")), chain))
+                .verifyComplete();
+        assertSame(Boolean.TRUE, traced.get());
+
+        // neither
+        StepVerifier.create(signalLogging.filter(MockServerWebExchange.from(MockServerHttpRequest.get("/v1/stats")), chain))
+                .verifyComplete();
+        assertSame(Boolean.FALSE, traced.get());
+    }
+}
@@ -0,0 +1,68 @@
+package com.reactivespring.tracing;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.server.HttpServer;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpanExporterTest {
+
+    @DisplayName("DroppedSpansCounted")
+    @Test
+    void test_export_QueueFull() {
+        // given : nothing is flushed during the test
+        var spanExporter = new SpanExporter("movies-service", "zipkin", "http://localhost:9411/api/v2/spans", 100, 2,
+                Duration.ofHours(1), Duration.ofSeconds(5));
+        var registry = new SimpleMeterRegistry();
+        spanExporter.bindTo(registry);
+
+        // when
+        for (int i = 0; i < 5; i++) {
+            export(spanExporter);
+        }
+        spanExporter.dispose();
+
+        // then
+        assertEquals(3.0, registry.get("tracing.spans.dropped").functionCounter().count());
+    }
+
+    @DisplayName("HungCollectorDoesNotStopTheExport")
+    @Test
+    void test_export_CollectorHangs() throws InterruptedException {
+        // given : a collector that never answers
+        var requests = new AtomicInteger();
+        var collector = HttpServer.create()
+                .port(0)
+                .route(routes -> routes.post("/api/v2/spans", (request, response) -> {
+                    requests.incrementAndGet();
+                    return Mono.never();
+                }))
+                .bindNow();
+        var spanExporter = new SpanExporter("movies-service", "zipkin",
+                "http://localhost:" + collector.port() + "/api/v2/spans", 1, 2048, Duration.ofMillis(5),
+                Duration.ofMillis(200));
+        for (int i = 0; i < 200; i++) {
+            export(spanExporter);
+        }
+
+        // when : far more ticks than concatMap buffers go by while flushes hang
+        Thread.sleep(2000);
+        spanExporter.dispose();
+        collector.disposeNow();
+
+        // then : every hung flush timed out and the next ones were still sent
+        assertTrue(requests.get() > 2, "requests " + requests.get());
+    }
+
+    private static void export(SpanExporter spanExporter) {
+        spanExporter.export(TraceContext.root(true), "SERVER", "GET /v1/movies/{id}", 1L, 1L, Map.of());
+    }
+}
@@ -0,0 +1,55 @@
+package com.reactivespring.tracing;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TraceContextTest {
+
+    @DisplayName("TraceparentRoundTrip")
+    @Test
+    void test_fromTraceparent() {
+        // given
+        var traceparent = "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01";
+
+        // when
+        var traceContext = TraceContext.fromTraceparent(traceparent);
+        var child = traceContext.child();
+
+        // then
+        assertEquals(traceparent, traceContext.traceparent());
+        assertTrue(traceContext.isSampled());
+        assertEquals(traceContext.getTraceId(), child.getTraceId());
+        assertEquals("00f067aa0ba902b7", child.getParentSpanId());
+        assertNotEquals(traceContext.getSpanId(), child.getSpanId());
+        assertTrue(child.traceparent().matches("00-4bf92f3577b34da6a3ce929d0e0e4736-[0-9a-f]{16}-01"));
+    }
+
+    @DisplayName("InvalidTraceparent")
+    @Test
+    void test_fromTraceparent_Invalid() {
+        assertNull(TraceContext.fromTraceparent(null));
+        assertNull(TraceContext.fromTraceparent("00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7"));
+        // all zero trace id, upper case hex, unknown version
+        assertNull(TraceContext.fromTraceparent("00-00000000000000000000000000000000-00f067aa0ba902b7-01"));
+        assertNull(TraceContext.fromTraceparent("00-4BF92F3577B34DA6A3CE929D0E0E4736-00f067aa0ba902b7-01"));
+        assertNull(TraceContext.fromTraceparent("01-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01"));
+    }
+
+    @DisplayName("RootSpan")
+    @Test
+    void test_root() {
+        // when
+        var traceContext = TraceContext.root(false);
+
+        // then
+        assertNull(traceContext.getParentSpanId());
+        assertFalse(traceContext.isSampled());
+        assertTrue(traceContext.traceparent().matches("00-[0-9a-f]{32}-[0-9a-f]{16}-00"));
+    }
+}
@@ -1,17 +1,37 @@
 package com.reactivespring.controller;
 
+import com.reactivespring.bulk.BulkIngester;
 import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoEvent;
+import com.reactivespring.logging.SignalLogging;
+import com.reactivespring.repository.IdKeyset;
+import com.reactivespring.streaming.BatchedStreamWriter;
 import com.reactivespring.service.MovieInfoService;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.util.DigestUtils;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.BufferOverflowStrategy;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import javax.validation.ConstraintViolation;
 import javax.validation.Valid;
+import javax.validation.Validator;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @RestController
 @Validated
@@ -21,49 +41,226 @@ public class MoviesInfoController {
 
     private MovieInfoService movieInfoService;
 
+    private SignalLogging signalLogging;
+
+    private BatchedStreamWriter batchedStreamWriter;
+
+    private BulkIngester bulkIngester;
+
+    private Validator validator;
+
+    // response header carrying the cursor of the next page, absent on the last page
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    // page size when no limit is passed, and the hard cap on the limit
+    @Value("${movieinfos.page.defaultLimit:100}")
+    private int pageDefaultLimit;
+
+    @Value("${movieinfos.page.maxLimit:500}")
+    private int pageMaxLimit;
+
+    // max number of ids accepted by a single batch lookup
+    @Value("${movieinfos.batch.maxIds:500}")
+    private int batchMaxIds;
+
+    // Cache-Control of GET /movieinfos/{movieId} responses (200 and 304), none when empty
+    @Value("${movieinfos.byId.cacheControl:}")
+    private String byIdCacheControl;
+
+    // keeps idle event streams open through proxies/load balancers
+    @Value("${movieinfos.events.heartbeat:15s}")
+    private Duration eventsHeartbeat;
+
+    // events buffered per subscriber before its stream is failed, so it reconnects and starts from a clean cache
+    @Value("${movieinfos.events.bufferSize:1024}")
+    private int eventsBufferSize;
+
     // Ctor Dependency Injection
-    public MoviesInfoController(MovieInfoService movieInfoService) {
+    public MoviesInfoController(MovieInfoService movieInfoService, SignalLogging signalLogging,
+                                BatchedStreamWriter batchedStreamWriter, BulkIngester bulkIngester, Validator validator) {
         this.movieInfoService = movieInfoService;
+        this.signalLogging = signalLogging;
+        this.batchedStreamWriter = batchedStreamWriter;
+        this.bulkIngester = bulkIngester;
+        this.validator = validator;
     }
 
     @PostMapping("/movieinfos")
     @ResponseStatus(HttpStatus.CREATED)
     public Mono<MovieInfo> addMovieInfo(@Valid @RequestBody MovieInfo movieInfo) {
         log.info("!!!!!!! POST addMovieInfo entered !!!!!!!");
-        return movieInfoService.addMovieInfo(movieInfo).log();
+        return signalLogging.mono(movieInfoService.addMovieInfo(movieInfo), "signals.MoviesInfoController.addMovieInfo");
+    }
+
+    // Bulk ingestion : one MovieInfo per line, inserted (no movieInfoId) or replaced/inserted (movieInfoId given) with
+    // bulkWrite. Streams back one BulkItemResult per line as batches complete, invalid lines do not stop the upload
+    @PostMapping(value = "/movieinfos/bulk", consumes = MediaType.APPLICATION_NDJSON_VALUE,
+            produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Mono<Void> bulkUpsertMovieInfos(@RequestBody Flux<String> movieInfoLines, ServerWebExchange exchange) {
+        log.info("!!!!!!! POST bulkUpsertMovieInfos entered !!!!!!!");
+        var results = bulkIngester.ingest(movieInfoLines, MovieInfo.class, this::validate, movieInfoService::bulkUpsertMovieInfos);
+        return batchedStreamWriter.write(exchange.getResponse(), MediaType.APPLICATION_NDJSON, results, null);
+    }
+
+    // same messages as the @Valid of addMovieInfo (see GlobalErrorHandler)
+    private List<String> validate(MovieInfo movieInfo) {
+        return validator.validate(movieInfo)
+                .stream()
+                .map(ConstraintViolation::getMessage)
+                .sorted()
+                .collect(Collectors.toList());
     }
 
+    // Paginated on _id : pass the X-Next-Cursor header of a page as cursor to get the next one.
+    // fields=name,year : only these fields are read from Mongo and returned (movieInfoId always is), for list views
     @GetMapping("/movieinfos")
-    public Flux<MovieInfo> getAllMovieInfos(@RequestParam(name = "year", required = false) Integer year) {
+    public Mono<ResponseEntity<List<?>>> getAllMovieInfos(@RequestParam(name = "year", required = false) Integer year,
+                                                          @RequestParam(name = "cursor", required = false) String cursor,
+                                                          @RequestParam(name = "limit", required = false) Integer limit,
+                                                          @RequestParam(name = "fields", required = false) List<String> fields) {
         log.info("!!!!!!! GET  getAllMovies entered, Year is {} !!!!!!!", year);
-        if (null != year) {
+        int pageSize = limit == null ? pageDefaultLimit : Math.min(limit, pageMaxLimit);
+        if (pageSize < 1) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be a Positive value"));
+        }
+        String afterId;
+        try {
+            afterId = cursor == null ? null : IdKeyset.decodeCursor(cursor);
+        } catch (IllegalArgumentException ex) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor"));
+        }
+
+        // one extra document tells whether there is a next page
+        if (fields != null) {
+            return toPage(movieInfoService.getMovieInfosPage(year, afterId, pageSize + 1, fields), year, afterId, pageSize,
+                    MoviesInfoController::projectedMovieInfoId);
+        }
+        return toPage(movieInfoService.getMovieInfosPage(year, afterId, pageSize + 1), year, afterId, pageSize,
+                MovieInfo::getMovieInfoId);
+    }
+
+    // Same listing streamed whole for Accept application/x-ndjson or text/event-stream, in _id order. A broken stream
+    // is resumed from the cursor (or the Last-Event-ID of the last SSE event received)
+    @GetMapping(value = "/movieinfos", produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
+    public Mono<Void> streamAllMovieInfos(@RequestParam(name = "year", required = false) Integer year,
+                                          @RequestParam(name = "cursor", required = false) String cursor,
+                                          @RequestParam(name = "fields", required = false) List<String> fields,
+                                          @RequestHeader(name = "Last-Event-ID", required = false) String lastEventId,
+                                          ServerWebExchange exchange) {
+        log.info("!!!!!!! GET  streamAllMovieInfos entered, Year is {} !!!!!!!", year);
+        String afterId;
+        try {
+            var resumeCursor = cursor != null ? cursor : lastEventId;
+            afterId = resumeCursor == null ? null : IdKeyset.decodeCursor(resumeCursor);
+        } catch (IllegalArgumentException ex) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor"));
+        }
+        // limit 0 : no limit, the Mongo cursor is drained as the response is written
+        if (fields != null) {
+            return stream(movieInfoService.getMovieInfosPage(year, afterId, 0, fields), exchange,
+                    MoviesInfoController::projectedMovieInfoId);
+        }
+        return stream(movieInfoService.getMovieInfosPage(year, afterId, 0), exchange, MovieInfo::getMovieInfoId);
+    }
+
+    private <T> Mono<ResponseEntity<List<?>>> toPage(Flux<T> movieInfoFlux, Integer year, String afterId, int pageSize,
+                                                     Function<T, String> movieInfoId) {
+        if (null != year && null == afterId) {
             // See : This exception is propagated back to GlobalErrorHandler
-            return movieInfoService.getMovieInfoByYear(year)
-                    .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "No movie for the given year is available")))
-                    .log();
+            movieInfoFlux = movieInfoFlux
+                    .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "No movie for the given year is available")));
         }
-        return movieInfoService.getAllMovieInfos()
-                .log();
+        return signalLogging.flux(movieInfoFlux, "signals.MoviesInfoController.getAllMovieInfos")
+                .onErrorMap(IllegalArgumentException.class, ex -> new ResponseStatusException(HttpStatus.BAD_REQUEST, ex.getMessage()))
+                .collectList()
+                .map(movieInfos -> {
+                    if (movieInfos.size() <= pageSize) {
+                        return ResponseEntity.ok().<List<?>>body(movieInfos);
+                    }
+                    var page = movieInfos.subList(0, pageSize);
+                    return ResponseEntity.ok()
+                            .header(NEXT_CURSOR_HEADER, IdKeyset.encodeCursor(movieInfoId.apply(page.get(pageSize - 1))))
+                            .<List<?>>body(page);
+                });
+    }
+
+    private <T> Mono<Void> stream(Flux<T> movieInfoFlux, ServerWebExchange exchange, Function<T, String> movieInfoId) {
+        var mediaType = BatchedStreamWriter.negotiate(exchange.getRequest().getHeaders().getAccept());
+        movieInfoFlux = signalLogging.flux(movieInfoFlux, "signals.MoviesInfoController.streamAllMovieInfos")
+                .onErrorMap(IllegalArgumentException.class, ex -> new ResponseStatusException(HttpStatus.BAD_REQUEST, ex.getMessage()));
+        return batchedStreamWriter.write(exchange.getResponse(), mediaType, movieInfoFlux,
+                movieInfo -> IdKeyset.encodeCursor(movieInfoId.apply(movieInfo)));
+    }
+
+    private static String projectedMovieInfoId(Map<String, Object> projectedMovieInfo) {
+        return (String) projectedMovieInfo.get("movieInfoId");
     }
 
+    // The ETag is the document version : when it matches If-None-Match, WebFlux answers 304 without serializing the body
     @GetMapping("/movieinfos/{movieId}")
     public Mono<ResponseEntity<MovieInfo>> getMovieInfoById(@PathVariable(name = "movieId", required = true) String movieId) {
         log.info("!!!!!!! GET  getMovieInfoById entered !!!!!!!");
-        return movieInfoService.getMovieInfoById(movieId)
-                .map(ResponseEntity.ok()::body)
-                .switchIfEmpty(Mono.just(ResponseEntity.notFound().build()))
-                .log();
+        return signalLogging.mono(movieInfoService.getMovieInfoById(movieId)
+                .map(movieInfo -> {
+                    var responseBuilder = ResponseEntity.ok().eTag(eTag(movieInfo));
+                    if (!byIdCacheControl.isBlank()) {
+                        responseBuilder.header(HttpHeaders.CACHE_CONTROL, byIdCacheControl);
+                    }
+                    return responseBuilder.body(movieInfo);
+                })
+                .switchIfEmpty(Mono.just(ResponseEntity.notFound().build())), "signals.MoviesInfoController.getMovieInfoById");
+    }
+
+    // every write increments the version, so id + version identifies the content. Documents written before versioning
+    // have none and fall back to a hash of their content
+    static String eTag(MovieInfo movieInfo) {
+        if (movieInfo.getVersion() != null) {
+            return "\"" + movieInfo.getMovieInfoId() + "-" + movieInfo.getVersion() + "\"";
+        }
+        return "\"" + DigestUtils.md5DigestAsHex(movieInfo.toString().getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+
+    // Bulk lookup : body is a json array of ids, response is keyed by movieInfoId (ids not found are left out)
+    @PostMapping("/movieinfos/batch")
+    public Mono<Map<String, MovieInfo>> getMovieInfosByIds(@RequestBody List<String> movieIds) {
+        log.info("!!!!!!! POST getMovieInfosByIds entered for {} ids !!!!!!!", movieIds.size());
+        if (movieIds.size() > batchMaxIds) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "A maximum of " + batchMaxIds + " ids is allowed per request"));
+        }
+        return movieInfoService.getMovieInfosByIds(movieIds)
+                .collectMap(MovieInfo::getMovieInfoId);
+    }
+
+    // Change feed (SSE) of MovieInfo writes. The first event is always "connected" : subscribers missed everything
+    // before it, so they should drop their whole cache at that point and evict by movieInfoId afterwards
+    @GetMapping(value = "/movieinfos/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<MovieInfoEvent>> streamMovieInfoEvents() {
+        log.info("!!!!!!! GET streamMovieInfoEvents entered !!!!!!!");
+        var events = movieInfoService.getMovieInfoEvents()
+                .onBackpressureBuffer(eventsBufferSize, BufferOverflowStrategy.ERROR)
+                .map(movieInfoEvent -> ServerSentEvent.builder(movieInfoEvent)
+                        .event(movieInfoEvent.getEventType().name())
+                        .build());
+        var heartbeats = Flux.interval(eventsHeartbeat)
+                .map(tick -> ServerSentEvent.<MovieInfoEvent>builder()
+                        .comment("heartbeat")
+                        .build());
+        // the live feed is subscribed before "connected" is sent, so no update falls in between (at worst one arrives
+        // before "connected" and is covered by the full flush)
+        return Flux.merge(events, Mono.just(ServerSentEvent.<MovieInfoEvent>builder()
+                        .event("connected")
+                        .build()), heartbeats);
     }
 
     @PutMapping("/movieinfos/{movieId}")
     public Mono<ResponseEntity<MovieInfo>> updateMovieInfoById(@Valid @RequestBody MovieInfo movieInfo, @PathVariable(name = "movieId", required = true) String movieId) {
         log.info("!!!!!!! GET  updateMovieInfoById entered !!!!!!!");
-        return movieInfoService.updateMovieInfoById(movieInfo, movieId)
+        return signalLogging.mono(movieInfoService.updateMovieInfoById(movieInfo, movieId)
                 .map(movieInfo1 -> {
                     return ResponseEntity.ok().body(movieInfo1);
                 })
-                .switchIfEmpty(Mono.just(ResponseEntity.notFound().build()))
-                .log();
+                .switchIfEmpty(Mono.just(ResponseEntity.notFound().build())), "signals.MoviesInfoController.updateMovieInfoById");
     }
 
     @DeleteMapping("movieinfos/{movieId}")
@@ -4,6 +4,8 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import javax.validation.constraints.NotBlank;
@@ -21,9 +23,12 @@ public class MovieInfo {
     @Id
     private String movieInfoId;
 
+    // not unique : titles are reused by remakes
+    @Indexed
     @NotBlank(message = "MovieInfo.name should be present")
     private String name;
 
+    @Indexed
     @NotNull(message = "MovieInfo.year must not be null")
     @Positive(message = "MovieInfo.year must be a Positive value")
     private int year;
@@ -31,4 +36,12 @@ public class MovieInfo {
     private List<@NotBlank(message = "MovieInfo.cast should be present") String> cast;
 
     private LocalDate release_date;
+
+    // optimistic locking : incremented by every write, an update sent with a stale version is rejected
+    @Version
+    private Long version;
+
+    public MovieInfo(String movieInfoId, String name, int year, List<String> cast, LocalDate release_date) {
+        this(movieInfoId, name, year, cast, release_date, null);
+    }
 }
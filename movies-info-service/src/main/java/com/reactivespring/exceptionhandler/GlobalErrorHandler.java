@@ -2,6 +2,8 @@ package com.reactivespring.exceptionhandler;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.support.DefaultMessageSourceResolvable;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -40,4 +42,13 @@ public class GlobalErrorHandler {
         return ResponseEntity.status(statusCode)
                 .body(errorBody);
     }
+
+    // stale version on an update, or an insert of an id that already exists : the client has to read it again
+    @ExceptionHandler({OptimisticLockingFailureException.class, DuplicateKeyException.class})
+    public ResponseEntity<String> handleConflict(RuntimeException ex) {
+        log.error("Inside GlobalExceptionHandler for conflicting write : {}", ex.getMessage());
+
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(ex.getMessage());
+    }
 }
@@ -0,0 +1,29 @@
+package com.reactivespring.repository;
+
+import com.reactivespring.domain.BulkItemResult;
+import com.reactivespring.domain.MovieInfo;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+public interface MovieInfoRepositoryCustom {
+
+    // page of movie infos in _id order, after afterId (first page when null), optionally only for one year
+    Flux<MovieInfo> findPage(Integer year, String afterId, int limit);
+
+    // same page with only the given MovieInfo properties read from Mongo (movieInfoId is always there), as property
+    // name -> value maps. Fails with IllegalArgumentException on an unknown property
+    Flux<Map<String, Object>> findPageProjected(Integer year, String afterId, int limit, Collection<String> fields);
+
+    // one unordered bulkWrite : movie infos without an id are inserted, the others upserted (their version checked when
+    // they have one). One result per movie info in the same order, CREATED / UPDATED / FAILED
+    Mono<List<BulkItemResult>> bulkUpsert(List<MovieInfo> movieInfos);
+
+    // applies the update and increments the version in one findAndModify, returning the updated movie info. With an
+    // expectedVersion, only a movie info still at that version is updated. Empty when nothing matched
+    Mono<MovieInfo> findAndUpdate(String movieInfoId, Long expectedVersion, Update update);
+}
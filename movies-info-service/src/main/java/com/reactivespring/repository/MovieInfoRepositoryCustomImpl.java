@@ -0,0 +1,183 @@
+package com.reactivespring.repository;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.bulk.BulkWriteUpsert;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.ErrorCategory;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
+import com.reactivespring.domain.BulkItemResult;
+import com.reactivespring.domain.BulkItemStatus;
+import com.reactivespring.domain.MovieInfo;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentProperty;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+public class MovieInfoRepositoryCustomImpl implements MovieInfoRepositoryCustom {
+
+    private static final String VERSION_FIELD = "version";
+
+    private ReactiveMongoTemplate reactiveMongoTemplate;
+
+    public MovieInfoRepositoryCustomImpl(ReactiveMongoTemplate reactiveMongoTemplate) {
+        this.reactiveMongoTemplate = reactiveMongoTemplate;
+    }
+
+    @Override
+    public Flux<MovieInfo> findPage(Integer year, String afterId, int limit) {
+        return reactiveMongoTemplate.find(pageQuery(year, afterId, limit), MovieInfo.class);
+    }
+
+    // Read as raw BSON documents : no MovieInfo is instantiated and Mongo only sends the projected fields
+    @Override
+    public Flux<Map<String, Object>> findPageProjected(Integer year, String afterId, int limit, Collection<String> fields) {
+        MongoPersistentEntity<?> entity = reactiveMongoTemplate.getConverter().getMappingContext()
+                .getRequiredPersistentEntity(MovieInfo.class);
+        List<MongoPersistentProperty> properties = new ArrayList<>();
+        properties.add(entity.getRequiredIdProperty());
+        for (String field : fields) {
+            var property = entity.getPersistentProperty(field);
+            if (property == null) {
+                return Flux.error(new IllegalArgumentException("Unknown field : " + field));
+            }
+            if (!properties.contains(property)) {
+                properties.add(property);
+            }
+        }
+        var query = pageQuery(year, afterId, limit);
+        properties.forEach(property -> query.fields().include(property.getFieldName()));
+        return reactiveMongoTemplate.find(query, Document.class, entity.getCollection())
+                .map(document -> toMap(document, properties));
+    }
+
+    // $set only touches the given fields and the version check happens in the same atomic operation as the write :
+    // one round-trip, no read-modify-write race
+    @Override
+    public Mono<MovieInfo> findAndUpdate(String movieInfoId, Long expectedVersion, Update update) {
+        var query = Query.query(Criteria.where("_id").is(movieInfoId));
+        if (expectedVersion != null) {
+            query.addCriteria(Criteria.where(VERSION_FIELD).is(expectedVersion));
+        }
+        return reactiveMongoTemplate.findAndModify(query, update.inc(VERSION_FIELD, 1),
+                FindAndModifyOptions.options().returnNew(true), MovieInfo.class);
+    }
+
+    // Unordered : a failing document (e.g. duplicate key) does not stop the others, and Mongo can apply the batch in
+    // parallel. Ids of new movie infos are generated here so that they can be reported back. Movie infos with an id
+    // are upserted with $set (fields missing from the record are left as they are) and $inc of the version. When the
+    // record has a version, the filter requires it : a stale version matches nothing, the upsert then collides with
+    // the existing _id and that record fails with a duplicate key error
+    @Override
+    public Mono<List<BulkItemResult>> bulkUpsert(List<MovieInfo> movieInfos) {
+        var collectionName = reactiveMongoTemplate.getCollectionName(MovieInfo.class);
+        List<WriteModel<Document>> writes = new ArrayList<>(movieInfos.size());
+        List<Object> ids = new ArrayList<>(movieInfos.size());
+        for (MovieInfo movieInfo : movieInfos) {
+            var document = new Document();
+            reactiveMongoTemplate.getConverter().write(movieInfo, document);
+            var id = document.get("_id");
+            if (id == null) {
+                id = new ObjectId();
+                document.put("_id", id);
+                document.put(VERSION_FIELD, 0L);
+                writes.add(new InsertOneModel<>(document));
+            } else {
+                Bson filter = movieInfo.getVersion() == null ? Filters.eq("_id", id)
+                        : Filters.and(Filters.eq("_id", id), Filters.eq(VERSION_FIELD, movieInfo.getVersion()));
+                List<Bson> updates = new ArrayList<>();
+                document.forEach((field, value) -> {
+                    if (!field.equals("_id") && !field.equals(VERSION_FIELD)) {
+                        updates.add(Updates.set(field, value));
+                    }
+                });
+                updates.add(Updates.inc(VERSION_FIELD, 1L));
+                writes.add(new UpdateOneModel<>(filter, Updates.combine(updates), new UpdateOptions().upsert(true)));
+            }
+            ids.add(id);
+        }
+        return reactiveMongoTemplate.getCollection(collectionName)
+                .flatMap(collection -> Mono.from(collection.bulkWrite(writes, new BulkWriteOptions().ordered(false))))
+                .map(bulkWriteResult -> toBulkItemResults(movieInfos, ids, bulkWriteResult, List.of()))
+                .onErrorResume(MongoBulkWriteException.class, ex ->
+                        Mono.just(toBulkItemResults(movieInfos, ids, ex.getWriteResult(), ex.getWriteErrors())));
+    }
+
+    private static List<BulkItemResult> toBulkItemResults(List<MovieInfo> movieInfos, List<Object> ids,
+                                                          BulkWriteResult bulkWriteResult, List<BulkWriteError> writeErrors) {
+        Map<Integer, BulkWriteError> errorsByIndex = writeErrors.stream()
+                .collect(Collectors.toMap(BulkWriteError::getIndex, Function.identity()));
+        // updates that matched nothing and inserted instead
+        Set<Integer> upserted = bulkWriteResult.getUpserts().stream()
+                .map(BulkWriteUpsert::getIndex)
+                .collect(Collectors.toSet());
+        List<BulkItemResult> results = new ArrayList<>(movieInfos.size());
+        for (int index = 0; index < movieInfos.size(); index++) {
+            var id = ids.get(index);
+            var movieInfoId = id instanceof ObjectId ? ((ObjectId) id).toHexString() : String.valueOf(id);
+            var writeError = errorsByIndex.get(index);
+            if (writeError != null) {
+                var versionConflict = movieInfos.get(index).getVersion() != null
+                        && ErrorCategory.fromErrorCode(writeError.getCode()) == ErrorCategory.DUPLICATE_KEY;
+                results.add(BulkItemResult.failed(movieInfoId, versionConflict
+                        ? "Version conflict : movieInfo " + movieInfoId + " is not at version " + movieInfos.get(index).getVersion()
+                        : writeError.getMessage()));
+            } else if (movieInfos.get(index).getMovieInfoId() == null || upserted.contains(index)) {
+                results.add(BulkItemResult.written(movieInfoId, BulkItemStatus.CREATED));
+            } else {
+                results.add(BulkItemResult.written(movieInfoId, BulkItemStatus.UPDATED));
+            }
+        }
+        return results;
+    }
+
+    private static Query pageQuery(Integer year, String afterId, int limit) {
+        var query = IdKeyset.pageQuery(afterId, limit);
+        if (year != null) {
+            query.addCriteria(Criteria.where("year").is(year));
+        }
+        return query;
+    }
+
+    // stored types back to what MovieInfo exposes : ObjectId ids as hex strings, LocalDate (stored as a Date at the
+    // start of the day in the default zone, like the MovieInfo mapping does)
+    private static Map<String, Object> toMap(Document document, List<MongoPersistentProperty> properties) {
+        Map<String, Object> projected = new LinkedHashMap<>();
+        for (MongoPersistentProperty property : properties) {
+            Object value = document.get(property.getFieldName());
+            if (value instanceof ObjectId) {
+                value = ((ObjectId) value).toHexString();
+            } else if (value instanceof Date && LocalDate.class.equals(property.getType())) {
+                value = ((Date) value).toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
+            }
+            projected.put(property.getName(), value);
+        }
+        return projected;
+    }
+}
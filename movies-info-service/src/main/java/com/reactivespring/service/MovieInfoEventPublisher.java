@@ -0,0 +1,32 @@
+package com.reactivespring.service;
+
+import com.reactivespring.domain.MovieInfoEvent;
+import com.reactivespring.domain.MovieInfoEventType;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Instant;
+
+// In-process change feed of MovieInfo writes, used by downstream caches to evict precisely.
+// Each instance only sees its own writes : when running several instances, feed this from a MongoDB change stream instead.
+@Component
+@Slf4j
+public class MovieInfoEventPublisher {
+
+    // best effort : a subscriber without demand does not hold back the others, it is dropped from the events it missed
+    // (subscribers buffer on their side and reconnect when they overflow)
+    private final Sinks.Many<MovieInfoEvent> sink = Sinks.many().multicast().directBestEffort();
+
+    public void publish(String movieInfoId, MovieInfoEventType eventType) {
+        var event = new MovieInfoEvent(movieInfoId, eventType, Instant.now());
+        // writes can complete on different threads at the same time, so retry instead of failing on concurrent emission
+        sink.emitNext(event, (signalType, emitResult) -> emitResult == Sinks.EmitResult.FAIL_NON_SERIALIZED);
+        log.debug("Published MovieInfoEvent : {}", event);
+    }
+
+    public Flux<MovieInfoEvent> events() {
+        return sink.asFlux();
+    }
+}
@@ -1,44 +1,122 @@
 package com.reactivespring.service;
 
+import com.reactivespring.domain.BulkItemResult;
+import com.reactivespring.domain.BulkItemStatus;
 import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoEvent;
+import com.reactivespring.domain.MovieInfoEventType;
 import com.reactivespring.repository.MovieInfoRepository;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+import java.util.Map;
+
 @Service
 public class MovieInfoService {
 
     MovieInfoRepository movieInfoRepository;
 
+    MovieInfoEventPublisher movieInfoEventPublisher;
+
     // Ctor Dependency Injection
-    public MovieInfoService(MovieInfoRepository movieInfoRepository) {
+    public MovieInfoService(MovieInfoRepository movieInfoRepository, MovieInfoEventPublisher movieInfoEventPublisher) {
         this.movieInfoRepository = movieInfoRepository;
+        this.movieInfoEventPublisher = movieInfoEventPublisher;
     }
 
     public Mono<MovieInfo> addMovieInfo(MovieInfo movieInfo) {
-        return movieInfoRepository.save(movieInfo);
+        // with a version save() replaces that version of the movie info (OptimisticLockingFailureException when it is
+        // stale). Without one the POST is an upsert like before versioning : an existing movie info is replaced at the
+        // version just read, a new id is inserted
+        if (movieInfo.getVersion() != null) {
+            return save(movieInfo, MovieInfoEventType.UPDATED);
+        }
+        if (movieInfo.getMovieInfoId() == null) {
+            return save(movieInfo, MovieInfoEventType.CREATED);
+        }
+        return movieInfoRepository.findById(movieInfo.getMovieInfoId())
+                .flatMap(existingMovieInfo -> {
+                    movieInfo.setVersion(existingMovieInfo.getVersion());
+                    return save(movieInfo, MovieInfoEventType.UPDATED);
+                })
+                .switchIfEmpty(Mono.defer(() -> save(movieInfo, MovieInfoEventType.CREATED)));
+    }
+
+    private Mono<MovieInfo> save(MovieInfo movieInfo, MovieInfoEventType eventType) {
+        return movieInfoRepository.save(movieInfo)
+                .doOnNext(savedMovieInfo -> movieInfoEventPublisher.publish(savedMovieInfo.getMovieInfoId(), eventType));
+    }
+
+    // one bulkWrite for the whole list, every written movie info is published like a single write
+    public Mono<List<BulkItemResult>> bulkUpsertMovieInfos(List<MovieInfo> movieInfos) {
+        return movieInfoRepository.bulkUpsert(movieInfos)
+                .doOnNext(results -> results.forEach(result -> {
+                    if (result.getStatus() == BulkItemStatus.CREATED) {
+                        movieInfoEventPublisher.publish(result.getId(), MovieInfoEventType.CREATED);
+                    } else if (result.getStatus() == BulkItemStatus.UPDATED) {
+                        movieInfoEventPublisher.publish(result.getId(), MovieInfoEventType.UPDATED);
+                    }
+                }));
     }
 
     public Flux<MovieInfo> getAllMovieInfos() {
         return movieInfoRepository.findAll();
     }
 
+    // keyset page on _id (see IdKeyset), year is optional
+    public Flux<MovieInfo> getMovieInfosPage(Integer year, String afterId, int limit) {
+        return movieInfoRepository.findPage(year, afterId, limit);
+    }
+
+    // same page with only the given fields, for list views
+    public Flux<Map<String, Object>> getMovieInfosPage(Integer year, String afterId, int limit, List<String> fields) {
+        return movieInfoRepository.findPageProjected(year, afterId, limit, fields);
+    }
+
     public Mono<MovieInfo> getMovieInfoById(String movieId) {
         return movieInfoRepository.findById(movieId);
     }
 
+    // findAllById is a single $in query on _id, ids with no matching document are simply absent
+    public Flux<MovieInfo> getMovieInfosByIds(List<String> movieIds) {
+        return movieInfoRepository.findAllById(movieIds);
+    }
+
+    // $set of year and name in a single findAndModify. When movieInfo carries a version, the update only applies to
+    // that version : empty when the movie info does not exist, OptimisticLockingFailureException when it changed since
     public Mono<MovieInfo> updateMovieInfoById(MovieInfo movieInfo, String searchMovieId) {
-        return movieInfoRepository.findById(searchMovieId)
-                .flatMap(movie -> {
-                    movie.setYear(movieInfo.getYear());
-                    movie.setName(movieInfo.getName());
-                    return movieInfoRepository.save(movie);
-                });
+        var update = new Update()
+                .set("year", movieInfo.getYear())
+                .set("name", movieInfo.getName());
+        return movieInfoRepository.findAndUpdate(searchMovieId, movieInfo.getVersion(), update)
+                .switchIfEmpty(Mono.defer(() -> staleVersion(searchMovieId, movieInfo.getVersion())))
+                .doOnNext(savedMovieInfo -> movieInfoEventPublisher.publish(savedMovieInfo.getMovieInfoId(), MovieInfoEventType.UPDATED));
+    }
+
+    // nothing matched : a missing movie info (empty) or, when a version was expected, possibly a stale one. Only checked
+    // on this failure path, the update itself stays a single round-trip
+    private Mono<MovieInfo> staleVersion(String movieId, Long expectedVersion) {
+        if (expectedVersion == null) {
+            return Mono.empty();
+        }
+        return movieInfoRepository.existsById(movieId)
+                .flatMap(exists -> exists
+                        ? Mono.error(new OptimisticLockingFailureException("MovieInfo " + movieId + " is no longer at version "
+                        + expectedVersion))
+                        : Mono.empty());
     }
 
     public Mono<Void> deleteMovieInfoById(String movieId) {
-        return movieInfoRepository.deleteById(movieId);
+        return movieInfoRepository.deleteById(movieId)
+                .doOnSuccess(unused -> movieInfoEventPublisher.publish(movieId, MovieInfoEventType.DELETED));
+    }
+
+    public Flux<MovieInfoEvent> getMovieInfoEvents() {
+        return movieInfoEventPublisher.events();
     }
 
     public Flux<MovieInfo> getMovieInfoByYear(Integer year) {
@@ -0,0 +1,56 @@
+package com.reactivespring.config;
+
+import com.reactivespring.domain.MovieInfo;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.test.context.ActiveProfiles;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+
+// The initializer runs as an ApplicationRunner when the (embedded MongoDB) context starts
+@DataMongoTest
+@Import(MongoIndexInitializer.class)
+@ActiveProfiles("test")
+class MongoIndexInitializerIntgTest {
+
+    @Autowired
+    ReactiveMongoTemplate reactiveMongoTemplate;
+
+    @Autowired
+    MongoIndexInitializer mongoIndexInitializer;
+
+    @AfterEach
+    void tearDown() {
+        // puts back an index dropped by a test, the context (and its database) is shared with the other tests
+        mongoIndexInitializer.run(null);
+    }
+
+    @Test
+    void test_indexesCreatedAtStartup() {
+        StepVerifier.create(reactiveMongoTemplate.indexOps(MovieInfo.class).getIndexInfo().map(IndexInfo::getName)
+                        .collectList())
+                .assertNext(indexNames -> Assertions.assertTrue(indexNames.containsAll(List.of("name", "year")),
+                        "Missing index in " + indexNames))
+                .verifyComplete();
+
+        StepVerifier.create(mongoIndexInitializer.findUncoveredQueryMethods())
+                .expectNext(List.of())
+                .verifyComplete();
+    }
+
+    @Test
+    void test_uncoveredQueryMethodReported() {
+        reactiveMongoTemplate.indexOps(MovieInfo.class).dropIndex("year").block();
+
+        StepVerifier.create(mongoIndexInitializer.findUncoveredQueryMethods())
+                .expectNext(List.of("MovieInfoRepository.findByYear"))
+                .verifyComplete();
+    }
+}
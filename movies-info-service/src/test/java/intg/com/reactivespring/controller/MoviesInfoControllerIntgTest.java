@@ -291,4 +291,30 @@ class MoviesInfoControllerIntgTest {
 //                   System.out.println("Printing exception : " + stringEntityExchangeResult.getResponseBody());
 //                });
     }
-}
\ No newline at end of file
+
+    @Order(10)
+    @DisplayName("POST MovieInfo ExistingId")
+    @Test
+    void addMovieInfo_ExistingId() {
+        // given : an id that is not stored yet, then the same id again without a version
+        var movieInfo = new MovieInfo("upsert", "Tenet", 2020, List.of("John David Washington"),
+                LocalDate.parse("2020-08-26"));
+        var replacingMovieInfo = new MovieInfo("upsert", "Tenet (IMAX)", 2020, List.of("John David Washington"),
+                LocalDate.parse("2020-08-26"));
+
+        // when/then : both POSTs succeed, the second one replaces the first
+        for (MovieInfo postedMovieInfo : List.of(movieInfo, replacingMovieInfo)) {
+            webTestClient.post()
+                    .uri(MOVIE_INFO_URL)
+                    .bodyValue(postedMovieInfo)
+                    .exchange()
+                    .expectStatus()
+                    .isCreated();
+        }
+        StepVerifier.create(movieInfoRepository.findById("upsert"))
+                .assertNext(savedMovieInfo -> Assertions.assertEquals("Tenet (IMAX)", savedMovieInfo.getName()))
+                .verifyComplete();
+
+        movieInfoRepository.deleteById("upsert").block();
+    }
+}
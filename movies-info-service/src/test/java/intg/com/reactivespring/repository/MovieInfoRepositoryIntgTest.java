@@ -1,9 +1,12 @@
 package com.reactivespring.repository;
 
+import com.reactivespring.domain.BulkItemResult;
+import com.reactivespring.domain.BulkItemStatus;
 import com.reactivespring.domain.MovieInfo;
 import org.junit.jupiter.api.*;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.test.context.ActiveProfiles;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
@@ -11,6 +14,8 @@ import reactor.test.StepVerifier;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 // Scans repository classes and make them available. Full spring app. context is not required for database layer
 // Only loads MongoDB configuration and components
@@ -128,6 +133,25 @@ class MovieInfoRepositoryIntgTest {
                 .verifyComplete();
     }
 
+    @DisplayName("findAndUpdate")
+    @Test
+    void test_FindAndUpdate() {
+        // given : saveAll inserted "abc" at version 0
+
+        // when/then : only the $set fields change and the version is incremented
+        StepVerifier.create(movieInfoRepository.findAndUpdate("abc", 0L, new Update().set("year", 2022)))
+                .assertNext(movie -> {
+                    Assertions.assertEquals(2022, movie.getYear());
+                    Assertions.assertEquals("Dark Knight Rises", movie.getName());
+                    Assertions.assertEquals(1L, movie.getVersion());
+                })
+                .verifyComplete();
+
+        // version 0 is stale now
+        StepVerifier.create(movieInfoRepository.findAndUpdate("abc", 0L, new Update().set("year", 2023)))
+                .verifyComplete();
+    }
+
     @DisplayName("deleteMovieInfo")
     @Test
     void test_DeleteMovieInfo() {
@@ -177,4 +201,70 @@ class MovieInfoRepositoryIntgTest {
                 .verifyComplete();
     }
 
-}
\ No newline at end of file
+    @DisplayName("findPageAcrossIdTypes")
+    @Test
+    void test_FindPage() {
+        // given : "abc" is a string id, the other ones are generated ObjectIds (sorted after every string)
+
+        // when
+        var firstPage = movieInfoRepository.findPage(null, null, 2)
+                .collectList()
+                .block();
+        var secondPage = movieInfoRepository.findPage(null, firstPage.get(1).getMovieInfoId(), 10)
+                .collectList()
+                .block();
+
+        // then : no skip, no duplicate
+        Assertions.assertEquals("abc", firstPage.get(0).getMovieInfoId());
+        Assertions.assertEquals(2, secondPage.size());
+        Assertions.assertTrue(secondPage.stream().noneMatch(movieInfo -> firstPage.contains(movieInfo)));
+    }
+
+    @DisplayName("findPageProjected")
+    @Test
+    void test_FindPageProjected() {
+        // given
+
+        // when
+        var projectedFlux = movieInfoRepository.findPageProjected(2012, null, 10, List.of("name", "release_date"));
+
+        // then : only the asked fields, plus the id
+        StepVerifier.create(projectedFlux)
+                .assertNext(projected -> {
+                    Assertions.assertEquals(Map.of("movieInfoId", "abc", "name", "Dark Knight Rises",
+                            "release_date", LocalDate.parse("2012-07-20")), projected);
+                })
+                .verifyComplete();
+
+        StepVerifier.create(movieInfoRepository.findPageProjected(null, null, 10, List.of("budget")))
+                .expectError(IllegalArgumentException.class)
+                .verify();
+    }
+
+    @DisplayName("bulkUpsert")
+    @Test
+    void test_BulkUpsert() {
+        // given : a new movie, an existing one replaced and an unknown id (inserted)
+        var movieInfos = List.of(new MovieInfo(null, "Batman Forever", 1995, List.of("Val Kilmer"), LocalDate.parse("1995-06-16")),
+                new MovieInfo("abc", "The Dark Knight Rises", 2012, List.of("Christian Bale"), LocalDate.parse("2012-07-20")),
+                new MovieInfo("xyz", "Tenet", 2020, List.of("John David Washington"), LocalDate.parse("2020-08-26")));
+
+        // when
+        var results = movieInfoRepository.bulkUpsert(movieInfos).block();
+
+        // then
+        Assertions.assertNotNull(results);
+        Assertions.assertEquals(List.of(BulkItemStatus.CREATED, BulkItemStatus.UPDATED, BulkItemStatus.CREATED),
+                results.stream().map(BulkItemResult::getStatus).collect(Collectors.toList()));
+        Assertions.assertNotNull(results.get(0).getId());
+        StepVerifier.create(movieInfoRepository.findById("abc"))
+                .expectNextMatches(movieInfo -> movieInfo.getName().equals("The Dark Knight Rises"))
+                .verifyComplete();
+        StepVerifier.create(movieInfoRepository.findById(results.get(0).getId()))
+                .expectNextMatches(movieInfo -> movieInfo.getName().equals("Batman Forever"))
+                .verifyComplete();
+        StepVerifier.create(movieInfoRepository.count())
+                .expectNext(6L)
+                .verifyComplete();
+    }
+}
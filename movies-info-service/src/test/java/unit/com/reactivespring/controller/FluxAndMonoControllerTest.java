@@ -1,15 +1,18 @@
 package com.reactivespring.controller;
 
+import com.reactivespring.tracing.SpanExporter;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.context.annotation.Import;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import reactor.test.StepVerifier;
 
 
 @WebFluxTest(controllers = FluxAndMonoController.class)
+@Import(SpanExporter.class)
 class FluxAndMonoControllerTest {
 
     @Autowired
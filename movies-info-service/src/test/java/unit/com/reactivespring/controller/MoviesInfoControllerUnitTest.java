@@ -1,28 +1,50 @@
 package com.reactivespring.controller;
 
+import com.reactivespring.bulk.BulkIngester;
+import com.reactivespring.domain.BulkItemResult;
+import com.reactivespring.domain.BulkItemStatus;
 import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoEvent;
+import com.reactivespring.domain.MovieInfoEventType;
+import com.reactivespring.repository.IdKeyset;
 import com.reactivespring.service.MovieInfoService;
+import com.reactivespring.streaming.BatchedStreamWriter;
+import com.reactivespring.tracing.SpanExporter;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
 import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import org.springframework.web.util.UriComponentsBuilder;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
 
 import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.when;
 
 @WebFluxTest(controllers = MoviesInfoController.class)
+@Import({BatchedStreamWriter.class, BulkIngester.class, SpanExporter.class})
 @AutoConfigureWebTestClient
 public class MoviesInfoControllerUnitTest {
 
@@ -34,6 +56,42 @@ public class MoviesInfoControllerUnitTest {
     @MockBean
     private MovieInfoService movieInfoServiceMock;
 
+    @DisplayName("BulkUpsertMovieInfos")
+    @Test
+    void test_bulkUpsertMovieInfos() {
+        // given : a valid record, an invalid one, a malformed one and a blank line
+        var upload = "{\"name\":\"Batman Begins\",\"year\":2005,\"cast\":[\"Christian Bale\"],\"release_date\":\"2005-06-15\"}\n"
+                + "{\"name\":\"\",\"year\":2008,\"cast\":[\"Christian Bale\"]}\n"
+                + "{\"name\":\n"
+                + "\n"
+                + "{\"movieInfoId\":\"abc\",\"name\":\"Dark Knight Rises\",\"year\":2012,\"cast\":[\"Christian Bale\"]}\n";
+
+        // when : only the valid records reach the service, in one batch
+        when(movieInfoServiceMock.bulkUpsertMovieInfos(argThat(movieInfos -> movieInfos.size() == 2)))
+                .thenReturn(Mono.just(List.of(BulkItemResult.written("def", BulkItemStatus.CREATED),
+                        BulkItemResult.written("abc", BulkItemStatus.UPDATED))));
+
+        // then : one result per non blank line, in line order
+        var results = webTestClient.post()
+                .uri(MOVIE_INFO_URL + "/bulk")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .bodyValue(upload)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .returnResult(BulkItemResult.class)
+                .getResponseBody();
+
+        StepVerifier.create(results)
+                .expectNext(new BulkItemResult(1, "def", BulkItemStatus.CREATED, null))
+                .expectNext(new BulkItemResult(2, null, BulkItemStatus.INVALID, "MovieInfo.name should be present"))
+                .expectNextMatches(result -> result.getLine() == 3 && result.getStatus() == BulkItemStatus.INVALID
+                        && result.getError().startsWith("Malformed record"))
+                .expectNext(new BulkItemResult(5, "abc", BulkItemStatus.UPDATED, null))
+                .verifyComplete();
+    }
+
     @DisplayName("GetAllMovieInfos")
     @Test
     void test_getAllMovieInfos() {
@@ -45,8 +103,8 @@ public class MoviesInfoControllerUnitTest {
                 new MovieInfo("abc", "Dark Knight Rises",
                         2012, List.of("Christian Bale", "Tom Hardy"), LocalDate.parse("2012-07-20")));
 
-        // when : mock service getAllMovieInfos()
-        when(movieInfoServiceMock.getAllMovieInfos()).thenReturn(Flux.fromIterable(movies));
+        // when : mock service getMovieInfosPage()
+        when(movieInfoServiceMock.getMovieInfosPage(isNull(), isNull(), anyInt())).thenReturn(Flux.fromIterable(movies));
 
         // then
         webTestClient.get()
@@ -70,8 +128,8 @@ public class MoviesInfoControllerUnitTest {
                 new MovieInfo("abc", "Dark Knight Rises",
                         2012, List.of("Christian Bale", "Tom Hardy"), LocalDate.parse("2012-07-20")));
 
-        // when : mock service getMovieInfoByYear() to return just 1 movie match based on given year
-        when(movieInfoServiceMock.getMovieInfoByYear(isA(Integer.class))).thenReturn(Flux.just(movies.get(0)));
+        // when : mock service getMovieInfosPage() to return just 1 movie match based on given year
+        when(movieInfoServiceMock.getMovieInfosPage(isA(Integer.class), isNull(), anyInt())).thenReturn(Flux.just(movies.get(0)));
 
         // then
 
@@ -89,6 +147,111 @@ public class MoviesInfoControllerUnitTest {
                 .hasSize(1);
     }
 
+    @DisplayName("GetAllMovieInfosPaginated")
+    @Test
+    void test_getAllMovieInfos_Paginated() {
+        // given : limit 2, the service returns the extra 3rd document
+        var movies = List.of(new MovieInfo("abc", "Batman Begins", 2005,
+                        List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15")),
+                new MovieInfo("def", "The Dark Knight",
+                        2008, List.of("Christian Bale", "HeathLedger"), LocalDate.parse("2008-07-18")),
+                new MovieInfo("ghi", "Dark Knight Rises",
+                        2012, List.of("Christian Bale", "Tom Hardy"), LocalDate.parse("2012-07-20")));
+        when(movieInfoServiceMock.getMovieInfosPage(isNull(), isNull(), eq(3))).thenReturn(Flux.fromIterable(movies));
+        when(movieInfoServiceMock.getMovieInfosPage(isNull(), eq("def"), eq(3))).thenReturn(Flux.just(movies.get(2)));
+
+        // when/then : first page carries the cursor of "def"
+        var nextCursor = webTestClient.get()
+                .uri(MOVIE_INFO_URL + "?limit=2")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBodyList(MovieInfo.class)
+                .hasSize(2)
+                .returnResult()
+                .getResponseHeaders()
+                .getFirst("X-Next-Cursor");
+        assertNotNull(nextCursor);
+
+        // last page has no cursor
+        webTestClient.get()
+                .uri(MOVIE_INFO_URL + "?limit=2&cursor={cursor}", nextCursor)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectHeader()
+                .doesNotExist("X-Next-Cursor")
+                .expectBodyList(MovieInfo.class)
+                .hasSize(1);
+
+        webTestClient.get()
+                .uri(MOVIE_INFO_URL + "?cursor=%%%")
+                .exchange()
+                .expectStatus()
+                .isBadRequest();
+    }
+
+    @DisplayName("GetAllMovieInfosProjected")
+    @Test
+    void test_getAllMovieInfos_Projected() {
+        // given
+        List<Map<String, Object>> projectedMovies = List.of(Map.of("movieInfoId", "abc", "name", "Batman Begins", "year", 2005),
+                Map.of("movieInfoId", "def", "name", "The Dark Knight", "year", 2008));
+        when(movieInfoServiceMock.getMovieInfosPage(isNull(), isNull(), eq(2), eq(List.of("name", "year"))))
+                .thenReturn(Flux.fromIterable(projectedMovies));
+        when(movieInfoServiceMock.getMovieInfosPage(isNull(), isNull(), anyInt(), eq(List.of("budget"))))
+                .thenReturn(Flux.error(new IllegalArgumentException("Unknown field : budget")));
+
+        // when/then
+        webTestClient.get()
+                .uri(MOVIE_INFO_URL + "?fields=name,year&limit=1")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectHeader()
+                .valueEquals("X-Next-Cursor", IdKeyset.encodeCursor("abc"))
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(1)
+                .jsonPath("$[0].name").isEqualTo("Batman Begins")
+                .jsonPath("$[0].cast").doesNotExist();
+
+        webTestClient.get()
+                .uri(MOVIE_INFO_URL + "?fields=budget")
+                .exchange()
+                .expectStatus()
+                .isBadRequest();
+    }
+
+    @DisplayName("StreamAllMovieInfosNdjson")
+    @Test
+    void test_streamAllMovieInfos() {
+        // given : more movies than streaming.batchSize (100)
+        var movies = new ArrayList<MovieInfo>();
+        for (int i = 0; i < 250; i++) {
+            movies.add(new MovieInfo("id" + i, "Movie " + i, 2000, List.of("Cast"), LocalDate.parse("2000-01-01")));
+        }
+        when(movieInfoServiceMock.getMovieInfosPage(isNull(), isNull(), eq(0))).thenReturn(Flux.fromIterable(movies));
+
+        // when
+        var movieInfoFlux = webTestClient.get()
+                .uri(MOVIE_INFO_URL)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectHeader()
+                .contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .returnResult(MovieInfo.class)
+                .getResponseBody();
+
+        // then : one json document per line, in order
+        StepVerifier.create(movieInfoFlux)
+                .expectNextMatches(movieInfo -> movieInfo.getMovieInfoId().equals("id0"))
+                .expectNextCount(248)
+                .expectNextMatches(movieInfo -> movieInfo.getMovieInfoId().equals("id249"))
+                .verifyComplete();
+    }
+
     @DisplayName("GetMovieInfoById")
     @Test
     void test_getMovieInfoById() {
@@ -115,6 +278,42 @@ public class MoviesInfoControllerUnitTest {
                 });
     }
 
+    @DisplayName("GetMovieInfoById_NotModified")
+    @Test
+    void test_getMovieInfoById_NotModified() {
+        // given : version 3 of the movie info
+        String movieId = "abc";
+        when(movieInfoServiceMock.getMovieInfoById(anyString())).thenReturn(Mono.just(new MovieInfo(movieId, "Dark Knight Rises",
+                2012, List.of("Christian Bale", "Tom Hardy"), LocalDate.parse("2012-07-20"), 3L)));
+
+        // when/then : the first read gets the ETag
+        webTestClient.get()
+                .uri(MOVIE_INFO_URL + "/{id}", movieId)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"abc-3\"")
+                .expectHeader().exists(HttpHeaders.CACHE_CONTROL);
+
+        // revalidation with that ETag : 304 and no body
+        webTestClient.get()
+                .uri(MOVIE_INFO_URL + "/{id}", movieId)
+                .header(HttpHeaders.IF_NONE_MATCH, "\"abc-3\"")
+                .exchange()
+                .expectStatus()
+                .isNotModified()
+                .expectBody()
+                .isEmpty();
+
+        // a stale ETag gets the full response
+        webTestClient.get()
+                .uri(MOVIE_INFO_URL + "/{id}", movieId)
+                .header(HttpHeaders.IF_NONE_MATCH, "\"abc-2\"")
+                .exchange()
+                .expectStatus()
+                .isOk();
+    }
+
     @DisplayName("POSTMovieInfo")
     @Test
     void test_addMovieInfo() {
@@ -174,6 +373,27 @@ public class MoviesInfoControllerUnitTest {
                 });
     }
 
+    @DisplayName("UpdateMovieInfoById_StaleVersion")
+    @Test
+    void test_updateMovieInfoById_StaleVersion() {
+        // given : the client read version 1, someone else updated it since
+        String movieId = "abc";
+        var movie = new MovieInfo(movieId, "Batman Begins", 2005,
+                List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15"), 1L);
+
+        // when
+        when(movieInfoServiceMock.updateMovieInfoById(any(MovieInfo.class), isA(String.class)))
+                .thenReturn(Mono.error(new OptimisticLockingFailureException("MovieInfo abc is no longer at version 1")));
+
+        // then
+        webTestClient.put()
+                .uri(MOVIE_INFO_URL + "/{movieId}", movieId)
+                .bodyValue(movie)
+                .exchange()
+                .expectStatus()
+                .isEqualTo(HttpStatus.CONFLICT);
+    }
+
     @DisplayName("DeleteMovieInfoById")
     @Test
     void test_deleteMovieInfoById() {
@@ -236,5 +456,63 @@ public class MoviesInfoControllerUnitTest {
                 .isNotFound();
     }
 
+    @DisplayName("POSTMovieInfosBatch")
+    @Test
+    void test_getMovieInfosByIds() {
+        // given : "xyz" does not exist
+        var movieIds = List.of("abc", "def", "xyz");
+        var movies = List.of(new MovieInfo("abc", "Batman Begins", 2005,
+                        List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15")),
+                new MovieInfo("def", "The Dark Knight",
+                        2008, List.of("Christian Bale", "HeathLedger"), LocalDate.parse("2008-07-18")));
+
+        // when
+        when(movieInfoServiceMock.getMovieInfosByIds(anyList())).thenReturn(Flux.fromIterable(movies));
 
+        // then
+        webTestClient.post()
+                .uri(MOVIE_INFO_URL + "/batch")
+                .bodyValue(movieIds)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBody(new ParameterizedTypeReference<Map<String, MovieInfo>>() {
+                })
+                .consumeWith(mapEntityExchangeResult -> {
+                    var movieInfoById = mapEntityExchangeResult.getResponseBody();
+                    assert movieInfoById != null;
+                    assertEquals(2, movieInfoById.size());
+                    assertEquals("The Dark Knight", movieInfoById.get("def").getName());
+                    assertTrue(!movieInfoById.containsKey("xyz"), "missing ids should not be present");
+                });
+    }
+
+    @DisplayName("GetMovieInfoEvents")
+    @Test
+    void test_streamMovieInfoEvents() {
+        // given
+        var event = new MovieInfoEvent("abc", MovieInfoEventType.UPDATED, Instant.now());
+
+        // when : the update happens after the subscriber is connected
+        when(movieInfoServiceMock.getMovieInfoEvents())
+                .thenReturn(Flux.concat(Mono.delay(Duration.ofMillis(50)).thenReturn(event), Flux.never()));
+
+        // then : "connected" first, then the change events
+        var events = webTestClient.get()
+                .uri(MOVIE_INFO_URL + "/events")
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .returnResult(new ParameterizedTypeReference<ServerSentEvent<MovieInfoEvent>>() {
+                })
+                .getResponseBody();
+
+        StepVerifier.create(events)
+                .expectNextMatches(serverSentEvent -> "connected".equals(serverSentEvent.event()))
+                .expectNextMatches(serverSentEvent -> "UPDATED".equals(serverSentEvent.event())
+                        && "abc".equals(serverSentEvent.data().getMovieInfoId()))
+                .thenCancel()
+                .verify();
+    }
 }
@@ -5,14 +5,23 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.NonNull;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import javax.validation.constraints.Min;
+import java.time.Instant;
 
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 @Document
+// movieInfoId is the hottest filter : both indexes serve it alone (and $in), plus the newest/best first orderings
+@CompoundIndexes({
+        @CompoundIndex(name = "movieInfoId_reviewedAt", def = "{'movieInfoId': 1, 'reviewedAt': -1}"),
+        @CompoundIndex(name = "movieInfoId_rating", def = "{'movieInfoId': 1, 'rating': -1}")
+})
 public class Review {
 
     @Id
@@ -21,4 +30,13 @@ public class Review {
     private String comment;
     //@Min(value = 0L, message = "rating.negative : please pass a non-negative value")
     private Double rating;
+    // set by the service when the review is added
+    private Instant reviewedAt;
+    // optimistic locking : incremented by every write, an update sent with a stale version is rejected
+    @Version
+    private Long version;
+
+    public Review(String reviewId, Long movieInfoId, String comment, Double rating) {
+        this(reviewId, movieInfoId, comment, rating, null, null);
+    }
 }
@@ -0,0 +1,25 @@
+package com.reactivespring.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReviewStats {
+
+    private Long movieInfoId;
+    private long count;
+    // over the reviews that have a rating, null when none has one
+    private Double averageRating;
+    // floor(rating) -> number of reviews
+    private Map<Integer, Long> histogram;
+
+    public static ReviewStats empty(Long movieInfoId) {
+        return new ReviewStats(movieInfoId, 0, null, new TreeMap<>());
+    }
+}
@@ -0,0 +1,41 @@
+package com.reactivespring.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+// Per movie rating summary, maintained with $inc on every review write so that ReviewStats are read from one document
+// instead of aggregating the reviews. Sums are kept (not the average) so that the increments stay commutative.
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document
+public class ReviewSummary {
+
+    @Id
+    private Long movieInfoId;
+    private long count;
+    // reviews that have a rating, and the sum of their ratings
+    private long ratedCount;
+    private double ratingSum;
+    // floor(rating) -> number of reviews, keyed by string since Mongo field names are strings
+    private Map<String, Long> histogram;
+
+    public ReviewStats toReviewStats() {
+        Map<Integer, Long> reviewStatsHistogram = new TreeMap<>();
+        if (histogram != null) {
+            // a bucket back to 0 after deletes is still stored, it is not part of the stats
+            histogram.forEach((bucket, bucketCount) -> {
+                if (bucketCount != 0) {
+                    reviewStatsHistogram.put(Integer.valueOf(bucket), bucketCount);
+                }
+            });
+        }
+        return new ReviewStats(movieInfoId, count, ratedCount == 0 ? null : ratingSum / ratedCount, reviewStatsHistogram);
+    }
+}
@@ -0,0 +1,22 @@
+package com.reactivespring.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReviewSummaryRebuildReport {
+
+    // movies with at least one review
+    private long recomputed;
+    // stored summaries that were missing or did not match their reviews, and were rewritten
+    private long drifted;
+    // stored summaries of movies without any review left, deleted
+    private long removed;
+    // first drifted/removed movieInfoIds, capped so that the report stays small
+    private List<Long> driftedMovieInfoIds;
+}
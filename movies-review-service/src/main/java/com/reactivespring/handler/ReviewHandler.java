@@ -1,16 +1,38 @@
 package com.reactivespring.handler;
 
+import com.reactivespring.bulk.BulkIngester;
+import com.reactivespring.domain.BulkItemResult;
+import com.reactivespring.domain.BulkItemStatus;
 import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewStats;
+import com.reactivespring.domain.ReviewSummary;
+import com.reactivespring.logging.SignalLogging;
+import com.reactivespring.repository.IdKeyset;
+import com.reactivespring.repository.ReviewSummaryRepository;
+import com.reactivespring.streaming.BatchedStreamWriter;
 import com.reactivespring.repository.ReviewReactiveRepository;
+import com.reactivespring.summary.ReviewSummaryRebuilder;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.server.ServerRequest;
 import org.springframework.web.reactive.function.server.ServerResponse;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
@@ -20,63 +42,420 @@ public class ReviewHandler {
 
     private ReviewReactiveRepository reviewReactiveRepository;
 
-    public ReviewHandler(ReviewReactiveRepository reviewReactiveRepository) {
+    private SignalLogging signalLogging;
+
+    private BatchedStreamWriter batchedStreamWriter;
+
+    private ReviewSummaryRepository reviewSummaryRepository;
+
+    private ReviewSummaryRebuilder reviewSummaryRebuilder;
+
+    private BulkIngester bulkIngester;
+
+    // response header carrying the cursor of the next page, absent on the last page
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    // page size when no limit is passed, and the hard cap on the limit
+    @Value("${reviews.page.defaultLimit:100}")
+    private int pageDefaultLimit;
+
+    @Value("${reviews.page.maxLimit:500}")
+    private int pageMaxLimit;
+
+    // max number of movieInfoIds accepted by a single batch lookup
+    @Value("${reviews.batch.maxIds:500}")
+    private int batchMaxIds;
+
+    // top-N batch lookups run one limited query per movieInfoId, this many at a time
+    @Value("${reviews.batch.concurrency:8}")
+    private int batchConcurrency;
+
+    public ReviewHandler(ReviewReactiveRepository reviewReactiveRepository, SignalLogging signalLogging,
+                         BatchedStreamWriter batchedStreamWriter, ReviewSummaryRepository reviewSummaryRepository,
+                         ReviewSummaryRebuilder reviewSummaryRebuilder, BulkIngester bulkIngester) {
         this.reviewReactiveRepository = reviewReactiveRepository;
+        this.signalLogging = signalLogging;
+        this.batchedStreamWriter = batchedStreamWriter;
+        this.reviewSummaryRepository = reviewSummaryRepository;
+        this.reviewSummaryRebuilder = reviewSummaryRebuilder;
+        this.bulkIngester = bulkIngester;
     }
 
     public Mono<ServerResponse> addReview(ServerRequest request) {
         log.info("!!! ReviewHandler addReview invoked !!!");
 
         return request.bodyToMono(Review.class)
-                .flatMap(reviewReactiveRepository::save) // save it (reqReview -> reviewReactiveRepository.save(reqReview))
-                .flatMap(savedReview -> ServerResponse.status(HttpStatus.CREATED).bodyValue(savedReview)); // return response
+                .flatMap(reqReview -> {
+                    reqReview.setReviewedAt(Instant.now());
+                    // a POST with the id of an existing review replaces it : the previous document takes its rating out
+                    // of the summary, else the review would be counted twice
+                    Mono<Optional<Review>> previousReview = reqReview.getReviewId() == null
+                            ? Mono.just(Optional.empty())
+                            : reviewReactiveRepository.findById(reqReview.getReviewId())
+                            .map(Optional::of)
+                            .defaultIfEmpty(Optional.empty());
+                    return previousReview.flatMap(previous -> {
+                        // without a version the replace applies to the version just read : a concurrent write in
+                        // between fails the save instead of moving the summary from a document that is gone
+                        if (reqReview.getVersion() == null) {
+                            previous.ifPresent(review -> reqReview.setVersion(review.getVersion()));
+                        }
+                        return reviewReactiveRepository.save(reqReview) // save it
+                                .flatMap(savedReview -> reviewSummaryRepository.applyChange(previous.orElse(null), savedReview)
+                                        .thenReturn(savedReview));
+                    });
+                })
+                .flatMap(savedReview -> ServerResponse.status(HttpStatus.CREATED).bodyValue(savedReview)) // return response
+                .onErrorResume(ex -> ex instanceof OptimisticLockingFailureException || ex instanceof DuplicateKeyException,
+                        ex -> ServerResponse.status(HttpStatus.CONFLICT).bodyValue(ex.getMessage()));
+    }
+
+    // Bulk ingestion : one Review per line (application/x-ndjson), inserted with bulkWrite. Streams back one
+    // BulkItemResult per line as batches complete, invalid lines do not stop the upload
+    public Mono<ServerResponse> bulkAddReviews(ServerRequest request) {
+        log.info("!!! ReviewHandler bulkAddReviews invoked !!!");
+
+        var results = bulkIngester.ingest(request.bodyToFlux(String.class), Review.class, ReviewHandler::validate,
+                this::insertReviews);
+        return ServerResponse.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body((outputMessage, context) -> batchedStreamWriter.write(outputMessage, MediaType.APPLICATION_NDJSON,
+                        results, null));
+    }
+
+    private static List<String> validate(Review review) {
+        if (review.getMovieInfoId() == null) {
+            return List.of("Review.movieInfoId must not be null");
+        }
+        return List.of();
+    }
+
+    // the summaries of the whole batch are moved with one $inc per movie
+    private Mono<List<BulkItemResult>> insertReviews(List<Review> reviews) {
+        var reviewedAt = Instant.now();
+        reviews.forEach(review -> review.setReviewedAt(reviewedAt));
+        return reviewReactiveRepository.bulkInsert(reviews)
+                .flatMap(results -> {
+                    List<Review> insertedReviews = new ArrayList<>(reviews.size());
+                    for (int index = 0; index < reviews.size(); index++) {
+                        if (results.get(index).getStatus() == BulkItemStatus.CREATED) {
+                            insertedReviews.add(reviews.get(index));
+                        }
+                    }
+                    return reviewSummaryRepository.applyChanges(List.of(), insertedReviews)
+                            .thenReturn(results);
+                });
     }
 
     public Mono<ServerResponse> getReviews(ServerRequest request) {
         log.info("!!! ReviewHandler getReviews invoked !!!");
 
+        // application/x-ndjson or text/event-stream : streamed with batched flushes instead of one json array
+        MediaType streamingMediaType = BatchedStreamWriter.negotiate(request.headers().accept());
         Optional<String> movieInfoId = request.queryParam("movieInfoId");
         if (movieInfoId.isPresent()) {
             log.info("!!! ReviewHandler getReviews by movieInfoId {} ", movieInfoId.get());
-            Flux<Review> movieInfoReviewFlux = reviewReactiveRepository.findByMovieInfoId(Long.valueOf(movieInfoId.get()));
-            return buildReviewsResponse(movieInfoReviewFlux);
+            Flux<Review> movieInfoReviewFlux;
+            try {
+                movieInfoReviewFlux = findMovieInfoReviews(request, Long.valueOf(movieInfoId.get()));
+            } catch (IllegalArgumentException ex) { // NumberFormatException included
+                return ServerResponse.badRequest().bodyValue("Invalid movieInfoId, limit or sort : " + ex.getMessage());
+            }
+            return buildReviewsResponse(movieInfoReviewFlux, streamingMediaType);
+        } else if (streamingMediaType != null) {
+            return streamAllReviews(request, streamingMediaType);
         } else {
-            Flux<Review> reviewFlux = reviewReactiveRepository.findAll().log();
-            return buildReviewsResponse(reviewFlux);
+            return getReviewsPage(request);
         }
     }
 
-    private static Mono<ServerResponse> buildReviewsResponse(Flux<Review> movieInfoReviewFlux) {
+    // limit (capped at reviews.page.maxLimit) and sort=rating|newest : top-N reviews of the movie. Without either, every
+    // review of the movie in no particular order
+    private Flux<Review> findMovieInfoReviews(ServerRequest request, Long movieInfoId) {
+        if (!isTopN(request)) {
+            return reviewReactiveRepository.findByMovieInfoId(movieInfoId);
+        }
+        return reviewReactiveRepository.findReviews(movieInfoId, toSort(request.queryParam("sort").orElse(null)),
+                toLimit(request));
+    }
+
+    private static boolean isTopN(ServerRequest request) {
+        return request.queryParam("limit").isPresent() || request.queryParam("sort").isPresent();
+    }
+
+    // 0 (no limit) when absent, IllegalArgumentException when not a positive number
+    private int toLimit(ServerRequest request) {
+        var limit = request.queryParam("limit").map(Integer::valueOf).orElse(0);
+        if (request.queryParam("limit").isPresent() && limit < 1) {
+            throw new IllegalArgumentException("limit must be a Positive value");
+        }
+        return Math.min(limit, pageMaxLimit);
+    }
+
+    // rating : highest first, newest : latest reviewedAt first. Reviews without a rating (or reviewedAt) come last
+    static Sort toSort(String sort) {
+        if (sort == null) {
+            return Sort.unsorted();
+        }
+        switch (sort) {
+            case "rating":
+                return Sort.by(Sort.Direction.DESC, "rating");
+            case "newest":
+                return Sort.by(Sort.Direction.DESC, "reviewedAt");
+            default:
+                throw new IllegalArgumentException("sort must be one of rating, newest");
+        }
+    }
+
+    // whole collection in _id order, a broken stream is resumed from the cursor (or the Last-Event-ID of the last SSE
+    // event received)
+    private Mono<ServerResponse> streamAllReviews(ServerRequest request, MediaType streamingMediaType) {
+        String afterId;
+        try {
+            afterId = request.queryParam("cursor")
+                    .or(() -> Optional.ofNullable(request.headers().firstHeader("Last-Event-ID")))
+                    .map(IdKeyset::decodeCursor)
+                    .orElse(null);
+        } catch (IllegalArgumentException ex) {
+            return ServerResponse.badRequest().bodyValue("Invalid cursor : " + ex.getMessage());
+        }
+        // limit 0 : no limit, the Mongo cursor is drained as the response is written
+        var reviewFlux = signalLogging.flux(reviewReactiveRepository.findPage(afterId, 0), "signals.ReviewHandler.streamAllReviews");
+        return ServerResponse.ok()
+                .contentType(streamingMediaType)
+                .body((outputMessage, context) -> batchedStreamWriter.write(outputMessage, streamingMediaType, reviewFlux,
+                        review -> IdKeyset.encodeCursor(review.getReviewId())));
+    }
+
+    // Paginated on _id : pass the X-Next-Cursor header of a page as cursor to get the next one
+    private Mono<ServerResponse> getReviewsPage(ServerRequest request) {
+        int pageSize;
+        String afterId;
+        try {
+            pageSize = request.queryParam("limit")
+                    .map(Integer::valueOf)
+                    .map(limit -> Math.min(limit, pageMaxLimit))
+                    .orElse(pageDefaultLimit);
+            afterId = request.queryParam("cursor")
+                    .map(IdKeyset::decodeCursor)
+                    .orElse(null);
+        } catch (IllegalArgumentException ex) { // NumberFormatException included
+            return ServerResponse.badRequest().bodyValue("Invalid limit or cursor : " + ex.getMessage());
+        }
+        if (pageSize < 1) {
+            return ServerResponse.badRequest().bodyValue("limit must be a Positive value");
+        }
+
+        // one extra document tells whether there is a next page
+        return signalLogging.flux(reviewReactiveRepository.findPage(afterId, pageSize + 1), "signals.ReviewHandler.getReviews")
+                .collectList()
+                .flatMap(reviews -> {
+                    if (reviews.size() <= pageSize) {
+                        return ServerResponse.ok().bodyValue(reviews);
+                    }
+                    var page = reviews.subList(0, pageSize);
+                    return ServerResponse.ok()
+                            .header(NEXT_CURSOR_HEADER, IdKeyset.encodeCursor(page.get(pageSize - 1).getReviewId()))
+                            .bodyValue(page);
+                });
+    }
+
+    // movieInfoId=1,2,3 (or repeated movieInfoId params) : one $in query, response is keyed by movieInfoId and every
+    // requested id is present (with an empty list when it has no reviews, non numeric ids included). With limit and/or
+    // sort, the top-N of every movie instead : a $in query can not be limited per movie, so that is one indexed query
+    // per movieInfoId
+    public Mono<ServerResponse> getReviewsByMovieInfoIds(ServerRequest request) {
+        log.info("!!! ReviewHandler getReviewsByMovieInfoIds invoked !!!");
+
+        List<String> movieInfoIds = parseMovieInfoIds(request);
+        if (movieInfoIds.isEmpty() || movieInfoIds.size() > batchMaxIds) {
+            return ServerResponse.badRequest().bodyValue("Between 1 and " + batchMaxIds + " movieInfoIds are allowed per request");
+        }
+
+        if (isTopN(request)) {
+            Sort sort;
+            int limit;
+            try {
+                sort = toSort(request.queryParam("sort").orElse(null));
+                limit = toLimit(request);
+            } catch (IllegalArgumentException ex) {
+                return ServerResponse.badRequest().bodyValue("Invalid limit or sort : " + ex.getMessage());
+            }
+            return Flux.fromIterable(movieInfoIds)
+                    .flatMapSequential(movieInfoId -> {
+                        var numericMovieInfoId = toNumericMovieInfoId(movieInfoId);
+                        var reviews = numericMovieInfoId == null ? Flux.<Review>empty()
+                                : reviewReactiveRepository.findReviews(numericMovieInfoId, sort, limit);
+                        return reviews.collectList()
+                                .map(movieInfoReviews -> Map.entry(movieInfoId, movieInfoReviews));
+                    }, batchConcurrency)
+                    .collect(LinkedHashMap<String, List<Review>>::new, (groupedReviews, reviews) ->
+                            groupedReviews.put(reviews.getKey(), reviews.getValue()))
+                    .flatMap(groupedReviews -> ServerResponse.ok().bodyValue(groupedReviews));
+        }
+
+        var numericMovieInfoIds = toNumericMovieInfoIds(movieInfoIds);
+        var reviewFlux = numericMovieInfoIds.isEmpty() ? Flux.<Review>empty()
+                : reviewReactiveRepository.findByMovieInfoIdIn(numericMovieInfoIds);
+        return reviewFlux
+                .collectMultimap(Review::getMovieInfoId)
+                .map(reviewsByMovieInfoId -> {
+                    Map<String, List<Review>> groupedReviews = new LinkedHashMap<>();
+                    movieInfoIds.forEach(movieInfoId -> groupedReviews.put(movieInfoId,
+                            new ArrayList<>(reviewsByMovieInfoId.getOrDefault(toNumericMovieInfoId(movieInfoId), List.of()))));
+                    return groupedReviews;
+                })
+                .flatMap(groupedReviews -> ServerResponse.ok().bodyValue(groupedReviews));
+    }
+
+    // count, average rating and rating histogram of one movie, read from its ReviewSummary (maintained on every review
+    // write) instead of aggregating its reviews
+    public Mono<ServerResponse> getReviewStats(ServerRequest request) {
+        log.info("!!! ReviewHandler getReviewStats invoked !!!");
+
+        Long movieInfoId;
+        try {
+            movieInfoId = request.queryParam("movieInfoId")
+                    .map(Long::valueOf)
+                    .orElse(null);
+        } catch (NumberFormatException ex) {
+            return ServerResponse.badRequest().bodyValue("movieInfoId must be numeric : " + ex.getMessage());
+        }
+        if (movieInfoId == null) {
+            return ServerResponse.badRequest().bodyValue("movieInfoId is required");
+        }
+
+        return reviewSummaryRepository.findById(movieInfoId)
+                .map(ReviewSummary::toReviewStats)
+                .defaultIfEmpty(ReviewStats.empty(movieInfoId))
+                .flatMap(reviewStats -> ServerResponse.ok().bodyValue(reviewStats));
+    }
+
+    // movieInfoId=1,2,3 : stats keyed by movieInfoId, every requested id is present (count 0 when it has no reviews,
+    // non numeric ids included)
+    public Mono<ServerResponse> getReviewStatsByMovieInfoIds(ServerRequest request) {
+        log.info("!!! ReviewHandler getReviewStatsByMovieInfoIds invoked !!!");
+
+        List<String> movieInfoIds = parseMovieInfoIds(request);
+        if (movieInfoIds.isEmpty() || movieInfoIds.size() > batchMaxIds) {
+            return ServerResponse.badRequest().bodyValue("Between 1 and " + batchMaxIds + " movieInfoIds are allowed per request");
+        }
+
+        var numericMovieInfoIds = toNumericMovieInfoIds(movieInfoIds);
+        var reviewSummaryFlux = numericMovieInfoIds.isEmpty() ? Flux.<ReviewSummary>empty()
+                : reviewSummaryRepository.findAllById(numericMovieInfoIds);
+        return reviewSummaryFlux
+                .map(ReviewSummary::toReviewStats)
+                .collectMap(ReviewStats::getMovieInfoId)
+                .map(reviewStatsByMovieInfoId -> {
+                    Map<String, ReviewStats> allReviewStats = new LinkedHashMap<>();
+                    movieInfoIds.forEach(movieInfoId -> {
+                        var numericMovieInfoId = toNumericMovieInfoId(movieInfoId);
+                        allReviewStats.put(movieInfoId, reviewStatsByMovieInfoId.getOrDefault(numericMovieInfoId,
+                                ReviewStats.empty(numericMovieInfoId)));
+                    });
+                    return allReviewStats;
+                })
+                .flatMap(allReviewStats -> ServerResponse.ok().bodyValue(allReviewStats));
+    }
+
+    // comma separated and/or repeated movieInfoId params, as given and without duplicates
+    private static List<String> parseMovieInfoIds(ServerRequest request) {
+        return request.queryParams().getOrDefault("movieInfoId", List.of())
+                .stream()
+                .flatMap(movieInfoIdParam -> Arrays.stream(movieInfoIdParam.split(",")))
+                .map(String::trim)
+                .filter(movieInfoId -> !movieInfoId.isEmpty())
+                .distinct()
+                .collect(Collectors.toList());
+    }
+
+    // reviews are stored with a numeric movieInfoId, while movies-service batches MovieInfo ids as they are (Mongo
+    // string ids included). A non numeric id has no reviews : null here, and an empty entry in the response instead of
+    // a 400 that would fail every other id of the batch
+    private static Long toNumericMovieInfoId(String movieInfoId) {
+        try {
+            return Long.valueOf(movieInfoId);
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+    }
+
+    private static List<Long> toNumericMovieInfoIds(List<String> movieInfoIds) {
+        return movieInfoIds.stream()
+                .map(ReviewHandler::toNumericMovieInfoId)
+                .filter(Objects::nonNull)
+                .distinct()
+                .collect(Collectors.toList());
+    }
+
+    private Mono<ServerResponse> buildReviewsResponse(Flux<Review> movieInfoReviewFlux, MediaType streamingMediaType) {
+        if (streamingMediaType != null) {
+            return ServerResponse.ok()
+                    .contentType(streamingMediaType)
+                    .body((outputMessage, context) -> batchedStreamWriter.write(outputMessage, streamingMediaType,
+                            movieInfoReviewFlux, null));
+        }
         return ServerResponse.ok().body(movieInfoReviewFlux, Review.class);
     }
 
+    // One findAndModify ($set of comment and rating) instead of findById + save : the body is all the update needs, so
+    // there is no lookup to wait for before it. A version in the body makes the update conditional on it (409 when
+    // the review changed since it was read)
     public Mono<ServerResponse> updateReview(ServerRequest request) {
         log.info("!!! ReviewHandler updateReview invoked !!!");
 
         String reviewId = request.pathVariable("id");
-        Mono<Review> existingReview = reviewReactiveRepository.findById(reviewId);
 
-        return existingReview
-                .flatMap(review -> request.bodyToMono(Review.class) // 'review' == 'existingReview'
-                        .map(reqReview -> {// this map is done on Review just got from request by bodyToMono and not on existingReview
-                            // 'reqReview' == bodyToMono reqReview
-                            review.setComment(reqReview.getComment());
-                            review.setRating(reqReview.getRating());
-                            return review;
-                        })
-                        .flatMap(updatedReview -> reviewReactiveRepository.save(updatedReview)) // from above updatedReview
-                        .flatMap(savedReview -> ServerResponse.ok().bodyValue(savedReview))
-                );
+        return request.bodyToMono(Review.class)
+                .flatMap(reqReview -> {
+                    var update = new Update()
+                            .set("comment", reqReview.getComment())
+                            .set("rating", reqReview.getRating());
+                    return reviewReactiveRepository.findAndUpdate(reviewId, reqReview.getVersion(), update)
+                            .flatMap(previousReview -> {
+                                // the update as applied by Mongo, built from the previous document instead of reading it again
+                                var updatedReview = new Review(previousReview.getReviewId(), previousReview.getMovieInfoId(),
+                                        reqReview.getComment(), reqReview.getRating(), previousReview.getReviewedAt(),
+                                        previousReview.getVersion() == null ? 1L : previousReview.getVersion() + 1);
+                                return reviewSummaryRepository.applyChange(previousReview, updatedReview)
+                                        .then(ServerResponse.ok().bodyValue(updatedReview));
+                            })
+                            .switchIfEmpty(Mono.defer(() -> notFoundOrStale(reviewId, reqReview.getVersion())));
+                });
+    }
+
+    // nothing matched : a missing review or, when a version was expected, possibly a stale one. Only checked on this
+    // failure path, the update itself stays a single round-trip
+    private Mono<ServerResponse> notFoundOrStale(String reviewId, Long expectedVersion) {
+        if (expectedVersion == null) {
+            return ServerResponse.notFound().build();
+        }
+        return reviewReactiveRepository.existsById(reviewId)
+                .flatMap(exists -> exists
+                        ? ServerResponse.status(HttpStatus.CONFLICT)
+                        .bodyValue("Review " + reviewId + " is no longer at version " + expectedVersion)
+                        : ServerResponse.notFound().build());
     }
 
     public Mono<ServerResponse> deleteReview(ServerRequest request) {
         String reviewIdToDelete = request.pathVariable("id");
         log.info("!!! ReviewHandler deleteReview invoked, reviewIdToDelete {} ", reviewIdToDelete);
 
-        return reviewReactiveRepository.deleteById(reviewIdToDelete)
+        // the deleted document is needed to take its rating out of the summary
+        return reviewReactiveRepository.findAndDeleteById(reviewIdToDelete)
+                .flatMap(deletedReview -> reviewSummaryRepository.applyChange(deletedReview, null))
                 .then(ServerResponse.noContent().build());
     }
 
+    // recomputes the summaries from the reviews and returns what drifted
+    public Mono<ServerResponse> rebuildReviewSummaries(ServerRequest request) {
+        log.info("!!! ReviewHandler rebuildReviewSummaries invoked !!!");
+
+        return reviewSummaryRebuilder.rebuild()
+                .flatMap(report -> ServerResponse.ok().bodyValue(report));
+    }
+
     Mono<List<String>> getAllReviewIds() {
           return reviewReactiveRepository.findAll()
                       .distinct(Review::getReviewId)
@@ -4,6 +4,11 @@ import com.reactivespring.domain.Review;
 import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
 import reactor.core.publisher.Flux;
 
-public interface ReviewReactiveRepository extends ReactiveMongoRepository<Review, String> {
+import java.util.Collection;
+
+public interface ReviewReactiveRepository extends ReactiveMongoRepository<Review, String>, ReviewReactiveRepositoryCustom {
     Flux<Review> findByMovieInfoId(Long movieInfoId);
+
+    // derived as { movieInfoId : { $in : [...] } }
+    Flux<Review> findByMovieInfoIdIn(Collection<Long> movieInfoIds);
 }
@@ -0,0 +1,37 @@
+package com.reactivespring.repository;
+
+import com.reactivespring.domain.BulkItemResult;
+import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewSummary;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface ReviewReactiveRepositoryCustom {
+
+    // page of reviews in _id order, after afterId (first page when null)
+    Flux<Review> findPage(String afterId, int limit);
+
+    // first `limit` reviews of a movie in sort order (0 : no limit), sorted and limited by Mongo
+    Flux<Review> findReviews(Long movieInfoId, Sort sort, int limit);
+
+    // ReviewSummary per movieInfoId recomputed from the reviews by Mongo (every movie when null). Ids without reviews
+    // are absent
+    Flux<ReviewSummary> computeSummaries(Collection<Long> movieInfoIds);
+
+    // applies the update and increments the version in one findAndModify. With an expectedVersion, only a review still
+    // at that version is updated. Returns the review as it was BEFORE the update (its summary has to be moved off the
+    // old rating), empty when nothing matched
+    Mono<Review> findAndUpdate(String reviewId, Long expectedVersion, Update update);
+
+    // the deleted review, empty when there was none : only one of concurrent deletes of the same review gets it
+    Mono<Review> findAndDeleteById(String reviewId);
+
+    // one unordered bulkWrite of inserts (ids generated when absent). One result per review in the same order,
+    // CREATED or FAILED (e.g. duplicate reviewId)
+    Mono<List<BulkItemResult>> bulkInsert(List<Review> reviews);
+}
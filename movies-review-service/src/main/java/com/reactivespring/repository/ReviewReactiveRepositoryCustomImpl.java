@@ -0,0 +1,152 @@
+package com.reactivespring.repository;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.WriteModel;
+import com.reactivespring.domain.BulkItemResult;
+import com.reactivespring.domain.BulkItemStatus;
+import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewSummary;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.ArithmeticOperators;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+public class ReviewReactiveRepositoryCustomImpl implements ReviewReactiveRepositoryCustom {
+
+    private static final String VERSION_FIELD = "version";
+
+    private ReactiveMongoTemplate reactiveMongoTemplate;
+
+    public ReviewReactiveRepositoryCustomImpl(ReactiveMongoTemplate reactiveMongoTemplate) {
+        this.reactiveMongoTemplate = reactiveMongoTemplate;
+    }
+
+    @Override
+    public Flux<Review> findPage(String afterId, int limit) {
+        return reactiveMongoTemplate.find(IdKeyset.pageQuery(afterId, limit), Review.class);
+    }
+
+    // sorted on rating or reviewedAt, the (movieInfoId, rating) and (movieInfoId, reviewedAt) indexes return the
+    // reviews already in order : Mongo reads `limit` index entries instead of sorting every review of the movie
+    @Override
+    public Flux<Review> findReviews(Long movieInfoId, Sort sort, int limit) {
+        var query = Query.query(Criteria.where("movieInfoId").is(movieInfoId))
+                .with(sort)
+                .limit(limit);
+        return reactiveMongoTemplate.find(query, Review.class);
+    }
+
+    // $match on movieInfoId (index) then one group per (movieInfoId, floor(rating)) : at most a dozen small rows per
+    // movie come back, whatever its number of reviews, and they are folded into one ReviewSummary here
+    @Override
+    public Flux<ReviewSummary> computeSummaries(Collection<Long> movieInfoIds) {
+        List<AggregationOperation> operations = new ArrayList<>();
+        if (movieInfoIds != null) {
+            operations.add(Aggregation.match(Criteria.where("movieInfoId").in(movieInfoIds)));
+        }
+        operations.add(Aggregation.project("movieInfoId", "rating")
+                .and(ArithmeticOperators.Floor.floorValueOf("rating")).as("bucket"));
+        operations.add(Aggregation.group("movieInfoId", "bucket")
+                .count().as("count")
+                .sum("rating").as("ratingSum"));
+        return reactiveMongoTemplate.aggregate(Aggregation.newAggregation(operations), Review.class, Document.class)
+                .collectMultimap(row -> ((Number) row.get("_id", Document.class).get("movieInfoId")).longValue())
+                .flatMapIterable(rowsByMovieInfoId -> rowsByMovieInfoId.entrySet()
+                        .stream()
+                        .map(rows -> toReviewSummary(rows.getKey(), rows.getValue()))
+                        .collect(Collectors.toList()));
+    }
+
+    // $set only touches the given fields and the version check happens in the same atomic operation as the write :
+    // one round-trip, no read-modify-write race
+    @Override
+    public Mono<Review> findAndUpdate(String reviewId, Long expectedVersion, Update update) {
+        var query = Query.query(Criteria.where("_id").is(reviewId));
+        if (expectedVersion != null) {
+            query.addCriteria(Criteria.where(VERSION_FIELD).is(expectedVersion));
+        }
+        return reactiveMongoTemplate.findAndModify(query, update.inc(VERSION_FIELD, 1),
+                FindAndModifyOptions.options().returnNew(false), Review.class);
+    }
+
+    @Override
+    public Mono<Review> findAndDeleteById(String reviewId) {
+        return reactiveMongoTemplate.findAndRemove(Query.query(Criteria.where("_id").is(reviewId)), Review.class);
+    }
+
+    // Unordered : a failing review does not stop the others. Ids are generated here so that they can be reported back
+    @Override
+    public Mono<List<BulkItemResult>> bulkInsert(List<Review> reviews) {
+        var collectionName = reactiveMongoTemplate.getCollectionName(Review.class);
+        List<WriteModel<Document>> writes = new ArrayList<>(reviews.size());
+        List<String> ids = new ArrayList<>(reviews.size());
+        for (Review review : reviews) {
+            var document = new Document();
+            reactiveMongoTemplate.getConverter().write(review, document);
+            var id = document.get("_id");
+            if (id == null) {
+                id = new ObjectId();
+                document.put("_id", id);
+            }
+            document.putIfAbsent(VERSION_FIELD, 0L);
+            writes.add(new InsertOneModel<>(document));
+            ids.add(id instanceof ObjectId ? ((ObjectId) id).toHexString() : String.valueOf(id));
+        }
+        return reactiveMongoTemplate.getCollection(collectionName)
+                .flatMap(collection -> Mono.from(collection.bulkWrite(writes, new BulkWriteOptions().ordered(false))))
+                .map(bulkWriteResult -> toBulkItemResults(ids, List.of()))
+                .onErrorResume(MongoBulkWriteException.class, ex -> Mono.just(toBulkItemResults(ids, ex.getWriteErrors())));
+    }
+
+    private static List<BulkItemResult> toBulkItemResults(List<String> ids, List<BulkWriteError> writeErrors) {
+        Map<Integer, BulkWriteError> errorsByIndex = writeErrors.stream()
+                .collect(Collectors.toMap(BulkWriteError::getIndex, Function.identity()));
+        List<BulkItemResult> results = new ArrayList<>(ids.size());
+        for (int index = 0; index < ids.size(); index++) {
+            var writeError = errorsByIndex.get(index);
+            results.add(writeError == null
+                    ? BulkItemResult.written(ids.get(index), BulkItemStatus.CREATED)
+                    : BulkItemResult.failed(ids.get(index), writeError.getMessage()));
+        }
+        return results;
+    }
+
+    private static ReviewSummary toReviewSummary(Long movieInfoId, Collection<Document> rows) {
+        long count = 0;
+        long ratedCount = 0;
+        double ratingSum = 0;
+        Map<String, Long> histogram = new TreeMap<>();
+        for (Document row : rows) {
+            long bucketCount = ((Number) row.get("count")).longValue();
+            count += bucketCount;
+            // null bucket : reviews without a rating
+            var bucket = (Number) row.get("_id", Document.class).get("bucket");
+            if (bucket != null) {
+                ratedCount += bucketCount;
+                ratingSum += ((Number) row.get("ratingSum")).doubleValue();
+                histogram.merge(String.valueOf(bucket.intValue()), bucketCount, Long::sum);
+            }
+        }
+        return new ReviewSummary(movieInfoId, count, ratedCount, ratingSum, histogram);
+    }
+}
@@ -0,0 +1,16 @@
+package com.reactivespring.repository;
+
+import com.reactivespring.domain.Review;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+
+public interface ReviewSummaryRepositoryCustom {
+
+    // moves the summaries from the removed review to the added one : (null, added) on insert, (old, new) on update and
+    // (removed, null) on delete
+    Mono<Void> applyChange(Review removed, Review added);
+
+    // same for many reviews at once (e.g. a bulk insert) : still a single $inc per movie touched
+    Mono<Void> applyChanges(Collection<Review> removed, Collection<Review> added);
+}
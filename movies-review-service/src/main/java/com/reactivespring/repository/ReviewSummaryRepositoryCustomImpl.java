@@ -0,0 +1,71 @@
+package com.reactivespring.repository;
+
+import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewSummary;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class ReviewSummaryRepositoryCustomImpl implements ReviewSummaryRepositoryCustom {
+
+    private ReactiveMongoTemplate reactiveMongoTemplate;
+
+    public ReviewSummaryRepositoryCustomImpl(ReactiveMongoTemplate reactiveMongoTemplate) {
+        this.reactiveMongoTemplate = reactiveMongoTemplate;
+    }
+
+    // One upsert with $inc per movie touched, each atomic on its summary document so concurrent writes on the same
+    // movie never lose an increment. The review write and the summary write are still two operations : a crash in
+    // between leaves the summary off by one review until ReviewSummaryRebuilder runs.
+    @Override
+    public Mono<Void> applyChange(Review removed, Review added) {
+        return applyChanges(removed == null ? List.of() : List.of(removed), added == null ? List.of() : List.of(added));
+    }
+
+    @Override
+    public Mono<Void> applyChanges(Collection<Review> removed, Collection<Review> added) {
+        // deltas are summed per movie and field first, an Update keeps a single $inc per field
+        Map<Long, Map<String, Number>> deltasByMovieInfoId = new LinkedHashMap<>();
+        removed.forEach(review -> addDeltas(deltasByMovieInfoId, review, -1));
+        added.forEach(review -> addDeltas(deltasByMovieInfoId, review, 1));
+
+        return Flux.fromIterable(deltasByMovieInfoId.entrySet())
+                .concatMap(deltas -> {
+                    var update = new Update();
+                    deltas.getValue().forEach((field, delta) -> {
+                        if (delta.doubleValue() != 0) {
+                            update.inc(field, delta);
+                        }
+                    });
+                    if (update.getUpdateObject().isEmpty()) {
+                        // e.g. only the comment changed
+                        return Mono.empty();
+                    }
+                    return reactiveMongoTemplate.upsert(Query.query(Criteria.where("_id").is(deltas.getKey())), update,
+                            ReviewSummary.class);
+                })
+                .then();
+    }
+
+    private static void addDeltas(Map<Long, Map<String, Number>> deltasByMovieInfoId, Review review, int sign) {
+        if (review == null || review.getMovieInfoId() == null) {
+            return;
+        }
+        var deltas = deltasByMovieInfoId.computeIfAbsent(review.getMovieInfoId(), movieInfoId -> new LinkedHashMap<>());
+        deltas.merge("count", (long) sign, (current, delta) -> current.longValue() + delta.longValue());
+        if (review.getRating() != null) {
+            deltas.merge("ratedCount", (long) sign, (current, delta) -> current.longValue() + delta.longValue());
+            deltas.merge("ratingSum", sign * review.getRating(), (current, delta) -> current.doubleValue() + delta.doubleValue());
+            deltas.merge("histogram." + (int) Math.floor(review.getRating()), (long) sign,
+                    (current, delta) -> current.longValue() + delta.longValue());
+        }
+    }
+}
@@ -3,9 +3,11 @@ package com.reactivespring.router;
 import com.reactivespring.handler.ReviewHandler;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
 import org.springframework.web.reactive.function.server.RouterFunction;
 import org.springframework.web.reactive.function.server.ServerResponse;
 
+import static org.springframework.web.reactive.function.server.RequestPredicates.contentType;
 import static org.springframework.web.reactive.function.server.RequestPredicates.path;
 import static org.springframework.web.reactive.function.server.RouterFunctions.route;
 
@@ -19,7 +21,12 @@ public class ReviewRouter {
                 .nest(path("/v1/reviews"), builder -> {
                     builder
                             .GET("", request -> reviewHandler.getReviews(request))
+                            .GET("/batch", request -> reviewHandler.getReviewsByMovieInfoIds(request))
+                            .GET("/stats", request -> reviewHandler.getReviewStats(request))
+                            .GET("/stats/batch", request -> reviewHandler.getReviewStatsByMovieInfoIds(request))
+                            .POST("/summaries/rebuild", request -> reviewHandler.rebuildReviewSummaries(request))
                             .POST("", request -> reviewHandler.addReview(request))
+                            .POST("/bulk", contentType(MediaType.APPLICATION_NDJSON), request -> reviewHandler.bulkAddReviews(request))
                             .PUT("/{id}", request -> reviewHandler.updateReview(request))
                             .DELETE("/{id}",  request -> reviewHandler.deleteReview(request));
                 })
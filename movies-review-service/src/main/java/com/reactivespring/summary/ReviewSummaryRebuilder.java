@@ -0,0 +1,140 @@
+package com.reactivespring.summary;
+
+import com.reactivespring.domain.ReviewSummary;
+import com.reactivespring.domain.ReviewSummaryRebuildReport;
+import com.reactivespring.repository.ReviewReactiveRepository;
+import com.reactivespring.repository.ReviewSummaryRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Recomputes every ReviewSummary from the reviews and rewrites the ones that drifted from their $inc maintained value
+// (a crash between a review write and its summary write, a review edited directly in Mongo). Runs on demand through
+// POST /v1/reviews/summaries/rebuild and every reviewSummary.rebuildInterval when set.
+@Component
+@Slf4j
+public class ReviewSummaryRebuilder {
+
+    private ReviewReactiveRepository reviewReactiveRepository;
+
+    private ReviewSummaryRepository reviewSummaryRepository;
+
+    // 0 : only on demand
+    @Value("${reviewSummary.rebuildInterval:0s}")
+    private Duration rebuildInterval;
+
+    @Value("${reviewSummary.maxReportedIds:100}")
+    private int maxReportedIds;
+
+    private Disposable subscription;
+
+    public ReviewSummaryRebuilder(ReviewReactiveRepository reviewReactiveRepository,
+                                  ReviewSummaryRepository reviewSummaryRepository) {
+        this.reviewReactiveRepository = reviewReactiveRepository;
+        this.reviewSummaryRepository = reviewSummaryRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void schedule() {
+        if (rebuildInterval.isZero()) {
+            return;
+        }
+        subscription = Flux.interval(rebuildInterval, rebuildInterval)
+                // a run that fails is logged, the next one still happens
+                .concatMap(tick -> rebuild().onErrorResume(ex -> {
+                    log.error("ReviewSummary rebuild failed : {}", ex.getMessage());
+                    return Mono.empty();
+                }))
+                .subscribe();
+    }
+
+    // A review written while the rebuild runs can be counted in the recomputed summary and then $inc'ed again on top
+    // of it, the next rebuild corrects that
+    public Mono<ReviewSummaryRebuildReport> rebuild() {
+        var drifted = new AtomicLong();
+        var removed = new AtomicLong();
+        List<Long> driftedMovieInfoIds = new ArrayList<>();
+
+        return reviewReactiveRepository.computeSummaries(null)
+                .collectMap(ReviewSummary::getMovieInfoId)
+                .flatMap(recomputedSummaries -> reviewSummaryRepository.findAll()
+                        .collectMap(ReviewSummary::getMovieInfoId)
+                        .flatMap(storedSummaries -> {
+                            var rewrites = Flux.fromIterable(recomputedSummaries.values())
+                                    .filter(recomputed -> !matches(storedSummaries.get(recomputed.getMovieInfoId()), recomputed))
+                                    .doOnNext(recomputed -> {
+                                        drifted.incrementAndGet();
+                                        report(driftedMovieInfoIds, recomputed.getMovieInfoId());
+                                    })
+                                    .concatMap(reviewSummaryRepository::save);
+                            // movies whose last review is gone : nothing to recompute, the stored summary must go
+                            var deletes = Flux.fromIterable(storedSummaries.values())
+                                    .filter(stored -> !recomputedSummaries.containsKey(stored.getMovieInfoId()))
+                                    .doOnNext(stored -> {
+                                        removed.incrementAndGet();
+                                        report(driftedMovieInfoIds, stored.getMovieInfoId());
+                                    })
+                                    .concatMap(reviewSummaryRepository::delete);
+                            return rewrites.then(deletes.then())
+                                    .then(Mono.fromSupplier(() -> new ReviewSummaryRebuildReport(recomputedSummaries.size(),
+                                            drifted.get(), removed.get(), driftedMovieInfoIds)));
+                        }))
+                .doOnNext(report -> {
+                    if (report.getDrifted() + report.getRemoved() > 0) {
+                        log.warn("ReviewSummary drift corrected : {}", report);
+                    } else {
+                        log.info("ReviewSummary rebuild found no drift over {} movies", report.getRecomputed());
+                    }
+                });
+    }
+
+    private void report(List<Long> driftedMovieInfoIds, Long movieInfoId) {
+        if (driftedMovieInfoIds.size() < maxReportedIds) {
+            driftedMovieInfoIds.add(movieInfoId);
+        }
+    }
+
+    // ratingSum goes through +/- of doubles on every write, so it is compared with a tolerance
+    static boolean matches(ReviewSummary stored, ReviewSummary recomputed) {
+        if (stored == null) {
+            return false;
+        }
+        return stored.getCount() == recomputed.getCount()
+                && stored.getRatedCount() == recomputed.getRatedCount()
+                && Math.abs(stored.getRatingSum() - recomputed.getRatingSum()) <= 1e-6 * Math.max(1, Math.abs(recomputed.getRatingSum()))
+                && Objects.equals(nonZeroBuckets(stored.getHistogram()), nonZeroBuckets(recomputed.getHistogram()));
+    }
+
+    private static Map<String, Long> nonZeroBuckets(Map<String, Long> histogram) {
+        var buckets = new TreeMap<String, Long>();
+        if (histogram != null) {
+            histogram.forEach((bucket, bucketCount) -> {
+                if (bucketCount != 0) {
+                    buckets.put(bucket, bucketCount);
+                }
+            });
+        }
+        return buckets;
+    }
+
+    @PreDestroy
+    public void dispose() {
+        if (subscription != null) {
+            subscription.dispose();
+        }
+    }
+}
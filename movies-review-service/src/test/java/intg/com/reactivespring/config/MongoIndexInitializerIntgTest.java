@@ -0,0 +1,63 @@
+package com.reactivespring.config;
+
+import com.reactivespring.domain.Review;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.test.context.ActiveProfiles;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+import java.util.Set;
+
+// The initializer runs as an ApplicationRunner when the (embedded MongoDB) context starts
+@DataMongoTest
+@Import(MongoIndexInitializer.class)
+@ActiveProfiles("test")
+class MongoIndexInitializerIntgTest {
+
+    @Autowired
+    ReactiveMongoTemplate reactiveMongoTemplate;
+
+    @Autowired
+    MongoIndexInitializer mongoIndexInitializer;
+
+    @AfterEach
+    void tearDown() {
+        // puts back an index dropped by a test, the context (and its database) is shared with the other tests
+        mongoIndexInitializer.run(null);
+    }
+
+    @Test
+    void test_indexesCreatedAtStartup() {
+        StepVerifier.create(reactiveMongoTemplate.indexOps(Review.class).getIndexInfo().map(IndexInfo::getName)
+                        .collectList())
+                .assertNext(indexNames -> Assertions.assertTrue(
+                        indexNames.containsAll(List.of("movieInfoId_reviewedAt", "movieInfoId_rating")),
+                        "Missing index in " + indexNames))
+                .verifyComplete();
+
+        StepVerifier.create(mongoIndexInitializer.findUncoveredQueryMethods())
+                .expectNext(List.of())
+                .verifyComplete();
+    }
+
+    @Test
+    void test_uncoveredQueryMethodReported() {
+        var indexOps = reactiveMongoTemplate.indexOps(Review.class);
+        indexOps.dropIndex("movieInfoId_reviewedAt")
+                .then(indexOps.dropIndex("movieInfoId_rating"))
+                .block();
+
+        StepVerifier.create(mongoIndexInitializer.findUncoveredQueryMethods())
+                .assertNext(uncovered -> Assertions.assertEquals(
+                        Set.of("ReviewReactiveRepository.findByMovieInfoId", "ReviewReactiveRepository.findByMovieInfoIdIn"),
+                        Set.copyOf(uncovered)))
+                .verifyComplete();
+    }
+}
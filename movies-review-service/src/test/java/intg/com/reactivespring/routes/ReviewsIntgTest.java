@@ -1,7 +1,10 @@
 package com.reactivespring.routes;
 
 import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewStats;
+import com.reactivespring.domain.ReviewSummaryRebuildReport;
 import com.reactivespring.repository.ReviewReactiveRepository;
+import com.reactivespring.repository.ReviewSummaryRepository;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
@@ -16,6 +19,7 @@ import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
 import java.util.List;
+import java.util.Map;
 
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
 // This profile is not available so will not hinder with existing profile configs(app-files) and will connect to
@@ -30,6 +34,9 @@ public class ReviewsIntgTest {
     @Autowired
     ReviewReactiveRepository reviewReactiveRepository;
 
+    @Autowired
+    ReviewSummaryRepository reviewSummaryRepository;
+
     private static final String MOVIE_REVIEW_URL = "/v1/reviews";
     private Long totalRepoCount;
 
@@ -51,6 +58,8 @@ public class ReviewsIntgTest {
         System.out.println("!!!!!!!!!!!! @AfterAll RUNNING CLEANUP !!!!!!!!!!!");
         reviewReactiveRepository.deleteAll()
                 .block();
+        reviewSummaryRepository.deleteAll()
+                .block();
     }
 
     @Test
@@ -148,4 +157,65 @@ public class ReviewsIntgTest {
         return ids;
     }
 
+    @Test
+    void test_getReviewStats() {
+        // given : movie 2 has ratings 8.0 and 3.0, saved by setup without going through the handler so there is no
+        // summary yet : the rebuild reports both movies as drifted and writes their summaries
+        webTestClient.post()
+                .uri(MOVIE_REVIEW_URL + "/summaries/rebuild")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBody(ReviewSummaryRebuildReport.class)
+                .consumeWith(reportEntityExchangeResult -> {
+                    var report = reportEntityExchangeResult.getResponseBody();
+                    assert report != null;
+                    Assertions.assertEquals(2, report.getDrifted());
+                });
+
+        // when : a review added then deleted through the api, maintained with $inc
+        var savedReview = webTestClient.post()
+                .uri(MOVIE_REVIEW_URL)
+                .bodyValue(new Review(null, 2L, "Great Movie", 10.0))
+                .exchange()
+                .expectStatus()
+                .isCreated()
+                .expectBody(Review.class)
+                .returnResult()
+                .getResponseBody();
+        assert savedReview != null;
+
+        webTestClient.get()
+                .uri(MOVIE_REVIEW_URL + "/stats?movieInfoId=2")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBody(ReviewStats.class)
+                .isEqualTo(new ReviewStats(2L, 3, 7.0, Map.of(3, 1L, 8, 1L, 10, 1L)));
+
+        webTestClient.delete()
+                .uri(MOVIE_REVIEW_URL + "/{id}", savedReview.getReviewId())
+                .exchange()
+                .expectStatus()
+                .isNoContent();
+
+        // then
+        webTestClient.get()
+                .uri(MOVIE_REVIEW_URL + "/stats?movieInfoId=2")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBody(ReviewStats.class)
+                .isEqualTo(new ReviewStats(2L, 2, 5.5, Map.of(3, 1L, 8, 1L)));
+
+        // nothing drifted since the rebuild
+        webTestClient.post()
+                .uri(MOVIE_REVIEW_URL + "/summaries/rebuild")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBody()
+                .jsonPath("$.drifted").isEqualTo(0)
+                .jsonPath("$.removed").isEqualTo(0);
+    }
 }
@@ -1,32 +1,69 @@
 package com.reactivespring.routes;
 
+import com.reactivespring.bulk.BulkIngester;
+import com.reactivespring.domain.BulkItemResult;
+import com.reactivespring.domain.BulkItemStatus;
 import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewStats;
+import com.reactivespring.domain.ReviewSummary;
 import com.reactivespring.handler.ReviewHandler;
+import com.reactivespring.logging.SignalLogging;
+import com.reactivespring.repository.IdKeyset;
 import com.reactivespring.repository.ReviewReactiveRepository;
+import com.reactivespring.repository.ReviewSummaryRepository;
 import com.reactivespring.router.ReviewRouter;
+import com.reactivespring.streaming.BatchedStreamWriter;
+import com.reactivespring.summary.ReviewSummaryRebuilder;
+import com.reactivespring.tracing.SpanExporter;
+import com.reactivespring.tracing.TraceContext;
+import com.reactivespring.tracing.TracingWebFilter;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
 import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
 
 import java.util.List;
+import java.util.Map;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.isA;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @WebFluxTest
-@ContextConfiguration(classes = {ReviewRouter.class, ReviewHandler.class})
+@ContextConfiguration(classes = {ReviewRouter.class, ReviewHandler.class, SignalLogging.class, BatchedStreamWriter.class,
+        ReviewSummaryRebuilder.class, BulkIngester.class, TracingWebFilter.class, SpanExporter.class})
 @AutoConfigureWebTestClient
 public class ReviewsUnitTest {
 
     @MockBean
     private ReviewReactiveRepository reviewReactiveRepository;
 
+    @MockBean
+    private ReviewSummaryRepository reviewSummaryRepository;
+
     @Autowired
     private WebTestClient webTestClient;
 
@@ -39,6 +76,7 @@ public class ReviewsUnitTest {
 
         // when/then
         when(reviewReactiveRepository.save(isA(Review.class))).thenReturn(Mono.just(new Review("abc", 1L, "Awesome Movie", 9.0)));
+        when(reviewSummaryRepository.applyChange(isNull(), isA(Review.class))).thenReturn(Mono.empty());
 
         webTestClient.post()
                 .uri(MOVIE_REVIEW_URL)
@@ -55,6 +93,54 @@ public class ReviewsUnitTest {
                 });
     }
 
+    @Test
+    void test_addReview_ExistingId() {
+        // given : the review is already counted in its movie's summary with a rating of 9.0
+        var previousReview = new Review("abc", 1L, "Awesome Movie", 9.0, null, 3L);
+        var review = new Review("abc", 1L, "Good Movie", 7.5);
+
+        when(reviewReactiveRepository.findById("abc")).thenReturn(Mono.just(previousReview));
+        when(reviewReactiveRepository.save(isA(Review.class)))
+                .thenAnswer(invocation -> {
+                    Review savedReview = invocation.getArgument(0);
+                    return Mono.just(new Review(savedReview.getReviewId(), savedReview.getMovieInfoId(),
+                            savedReview.getComment(), savedReview.getRating(), savedReview.getReviewedAt(),
+                            savedReview.getVersion() + 1));
+                });
+        when(reviewSummaryRepository.applyChange(any(), any())).thenReturn(Mono.empty());
+
+        // when
+        webTestClient.post()
+                .uri(MOVIE_REVIEW_URL)
+                .bodyValue(review)
+                .exchange()
+                .expectStatus()
+                .isCreated();
+
+        // then : saved over the version just read, and the summary moves from the previous rating instead of adding one
+        verify(reviewReactiveRepository).save(argThat(savedReview -> savedReview.getVersion() == 3L));
+        verify(reviewSummaryRepository).applyChange(eq(previousReview),
+                argThat(savedReview -> savedReview.getRating() == 7.5 && savedReview.getVersion() == 4L));
+    }
+
+    @Test
+    void test_addReview_ExistingIdStale() {
+        // given
+        when(reviewReactiveRepository.findById("abc"))
+                .thenReturn(Mono.just(new Review("abc", 1L, "Awesome Movie", 9.0, null, 3L)));
+        when(reviewReactiveRepository.save(isA(Review.class)))
+                .thenReturn(Mono.error(new OptimisticLockingFailureException("Review abc is no longer at version 2")));
+
+        // when/then
+        webTestClient.post()
+                .uri(MOVIE_REVIEW_URL)
+                .bodyValue(new Review("abc", 1L, "Good Movie", 7.5, null, 2L))
+                .exchange()
+                .expectStatus()
+                .isEqualTo(HttpStatus.CONFLICT);
+        verify(reviewSummaryRepository, never()).applyChange(any(), any());
+    }
+
     @Test
     void test_getAllReviews() {
         var reviewsList = List.of(
@@ -64,7 +150,7 @@ public class ReviewsUnitTest {
                 new Review(null, 2L, "Shitty Movie", 3.0));
 
         // when
-        when(reviewReactiveRepository.findAll()).thenReturn(Flux.fromIterable(reviewsList));
+        when(reviewReactiveRepository.findPage(isNull(), anyInt())).thenReturn(Flux.fromIterable(reviewsList));
 
         // then
         webTestClient.get()
@@ -76,6 +162,59 @@ public class ReviewsUnitTest {
                 .hasSize(4);
     }
 
+    @Test
+    void test_getAllReviews_Paginated() {
+        // given : limit 1, the repository returns the extra 2nd review
+        var reviewsList = List.of(
+                new Review("abc", 1L, "Awesome Movie", 9.0),
+                new Review("def", 2L, "Excellent Movie", 8.0));
+        when(reviewReactiveRepository.findPage(isNull(), eq(2))).thenReturn(Flux.fromIterable(reviewsList));
+
+        // then : one review and the cursor of "abc"
+        webTestClient.get()
+                .uri(MOVIE_REVIEW_URL + "?limit=1")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectHeader()
+                .valueEquals("X-Next-Cursor", IdKeyset.encodeCursor("abc"))
+                .expectBodyList(Review.class)
+                .hasSize(1);
+
+        webTestClient.get()
+                .uri(MOVIE_REVIEW_URL + "?limit=abc")
+                .exchange()
+                .expectStatus()
+                .isBadRequest();
+    }
+
+    @Test
+    void test_streamAllReviews_ServerSentEvents() {
+        // given
+        var reviewsList = List.of(
+                new Review("abc", 1L, "Awesome Movie", 9.0),
+                new Review("def", 2L, "Excellent Movie", 8.0));
+        when(reviewReactiveRepository.findPage(isNull(), eq(0))).thenReturn(Flux.fromIterable(reviewsList));
+
+        // when
+        var events = webTestClient.get()
+                .uri(MOVIE_REVIEW_URL)
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .returnResult(new ParameterizedTypeReference<ServerSentEvent<Review>>() {
+                })
+                .getResponseBody();
+
+        // then : the event id is the cursor to resume after that review
+        StepVerifier.create(events)
+                .expectNextMatches(event -> IdKeyset.encodeCursor("abc").equals(event.id())
+                        && "Awesome Movie".equals(event.data().getComment()))
+                .expectNextMatches(event -> IdKeyset.encodeCursor("def").equals(event.id()))
+                .verifyComplete();
+    }
+
     @Test
     void test_deleteReview() {
         // given
@@ -83,7 +222,8 @@ public class ReviewsUnitTest {
         var oldReview = new Review(null, 1L, "Awesome Movie", 9.0);
 
         // when
-        when(reviewReactiveRepository.deleteById(isA(String.class))).thenReturn(Mono.empty());
+        when(reviewReactiveRepository.findAndDeleteById(isA(String.class))).thenReturn(Mono.just(oldReview));
+        when(reviewSummaryRepository.applyChange(isA(Review.class), isNull())).thenReturn(Mono.empty());
 
         // then
         webTestClient.delete()
@@ -91,6 +231,244 @@ public class ReviewsUnitTest {
                 .exchange()
                 .expectStatus()
                 .isNoContent();
+
+        // the deleted review is taken out of its movie summary
+        verify(reviewSummaryRepository).applyChange(oldReview, null);
+    }
+
+    @Test
+    void test_updateReview() {
+        // given : stored at version 3 with rating 9.0
+        var previousReview = new Review("abc", 1L, "Awesome Movie", 9.0, null, 3L);
+
+        // when
+        when(reviewReactiveRepository.findAndUpdate(eq("abc"), eq(3L), isA(Update.class))).thenReturn(Mono.just(previousReview));
+        when(reviewSummaryRepository.applyChange(isA(Review.class), isA(Review.class))).thenReturn(Mono.empty());
+
+        // then : the response is the updated review, its summary moves from 9.0 to 7.5
+        webTestClient.put()
+                .uri(MOVIE_REVIEW_URL + "/{id}", "abc")
+                .bodyValue(new Review(null, null, "Good Movie", 7.5, null, 3L))
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(Review.class)
+                .isEqualTo(new Review("abc", 1L, "Good Movie", 7.5, null, 4L));
+
+        verify(reviewSummaryRepository).applyChange(previousReview, new Review("abc", 1L, "Good Movie", 7.5, null, 4L));
+    }
+
+    @Test
+    void test_updateReview_StaleVersionOrMissing() {
+        // when : nothing matches version 2, the review exists (stale) / an unknown review
+        when(reviewReactiveRepository.findAndUpdate(isA(String.class), eq(2L), isA(Update.class))).thenReturn(Mono.empty());
+        when(reviewReactiveRepository.existsById("abc")).thenReturn(Mono.just(true));
+        when(reviewReactiveRepository.existsById("def")).thenReturn(Mono.just(false));
+
+        // then
+        webTestClient.put()
+                .uri(MOVIE_REVIEW_URL + "/{id}", "abc")
+                .bodyValue(new Review(null, null, "Good Movie", 7.5, null, 2L))
+                .exchange()
+                .expectStatus()
+                .isEqualTo(HttpStatus.CONFLICT);
+
+        webTestClient.put()
+                .uri(MOVIE_REVIEW_URL + "/{id}", "def")
+                .bodyValue(new Review(null, null, "Good Movie", 7.5, null, 2L))
+                .exchange()
+                .expectStatus()
+                .isNotFound();
+    }
+
+    @Test
+    void test_getReviewStats_ContinuesTrace() {
+        // given : a call from movies-service, in a sampled trace
+        when(reviewSummaryRepository.findById(eq(2L))).thenReturn(Mono.empty());
+
+        // then : same trace id, and a trace id on untraced calls too
+        webTestClient.get()
+                .uri(MOVIE_REVIEW_URL + "/stats?movieInfoId=2")
+                .header(TraceContext.TRACEPARENT, "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectHeader()
+                .valueEquals(TracingWebFilter.TRACE_ID_HEADER, "4bf92f3577b34da6a3ce929d0e0e4736");
+
+        webTestClient.get()
+                .uri(MOVIE_REVIEW_URL + "/stats?movieInfoId=2")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectHeader()
+                .valueMatches(TracingWebFilter.TRACE_ID_HEADER, "[0-9a-f]{32}");
+    }
+
+    @Test
+    void test_getReviewStatsByMovieInfoIds() {
+        // given : only movie 1 has reviews, its "7" bucket went back to 0 after a delete
+        when(reviewSummaryRepository.findAllById(anyIterable()))
+                .thenReturn(Flux.just(new ReviewSummary(1L, 3, 3, 25.5, Map.of("7", 0L, "8", 1L, "9", 2L))));
+        when(reviewSummaryRepository.findById(eq(2L))).thenReturn(Mono.empty());
+
+        // then
+        webTestClient.get()
+                .uri(MOVIE_REVIEW_URL + "/stats/batch?movieInfoId=1,2")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBody()
+                .jsonPath("$.1.count").isEqualTo(3)
+                .jsonPath("$.1.averageRating").isEqualTo(8.5)
+                .jsonPath("$.1.histogram.9").isEqualTo(2)
+                .jsonPath("$.1.histogram.7").doesNotExist()
+                .jsonPath("$.2.count").isEqualTo(0)
+                .jsonPath("$.2.averageRating").doesNotExist();
+
+        webTestClient.get()
+                .uri(MOVIE_REVIEW_URL + "/stats?movieInfoId=2")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBody(ReviewStats.class)
+                .isEqualTo(ReviewStats.empty(2L));
+    }
+
+    @Test
+    void test_getReviewsByMovieInfoIds() {
+        var reviewsList = List.of(
+                new Review("1", 1L, "Awesome Movie", 9.0),
+                new Review("2", 1L, "Awesome Movie1", 9.0),
+                new Review("3", 2L, "Excellent Movie", 8.0));
+
+        // when
+        when(reviewReactiveRepository.findByMovieInfoIdIn(anyCollection())).thenReturn(Flux.fromIterable(reviewsList));
+
+        // then : 3 has no reviews but is still present in the response
+        webTestClient.get()
+                .uri(uriBuilder -> uriBuilder.path(MOVIE_REVIEW_URL + "/batch")
+                        .queryParam("movieInfoId", "1,2,3")
+                        .build())
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBody(new ParameterizedTypeReference<Map<String, List<Review>>>() {
+                })
+                .consumeWith(mapEntityExchangeResult -> {
+                    var groupedReviews = mapEntityExchangeResult.getResponseBody();
+                    assert groupedReviews != null;
+                    assertEquals(2, groupedReviews.get("1").size());
+                    assertEquals(1, groupedReviews.get("2").size());
+                    assertEquals(0, groupedReviews.get("3").size());
+                });
+    }
+
+    @Test
+    void test_getReviewsByMovieInfoIds_NonNumericIds() {
+        // given : MovieInfo ids are Mongo string ids, only the numeric ones can have reviews
+        when(reviewReactiveRepository.findByMovieInfoIdIn(eq(List.of(1L))))
+                .thenReturn(Flux.just(new Review("1", 1L, "Awesome Movie", 9.0)));
+        when(reviewSummaryRepository.findAllById(eq(List.of(1L))))
+                .thenReturn(Flux.just(new ReviewSummary(1L, 1, 1, 9.0, Map.of("9", 1L))));
+
+        // then : the non numeric id gets an empty entry, the rest of the batch is answered
+        webTestClient.get()
+                .uri(uriBuilder -> uriBuilder.path(MOVIE_REVIEW_URL + "/batch")
+                        .queryParam("movieInfoId", "1,abc")
+                        .build())
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBody(new ParameterizedTypeReference<Map<String, List<Review>>>() {
+                })
+                .consumeWith(mapEntityExchangeResult -> {
+                    var groupedReviews = mapEntityExchangeResult.getResponseBody();
+                    assert groupedReviews != null;
+                    assertEquals(1, groupedReviews.get("1").size());
+                    assertEquals(0, groupedReviews.get("abc").size());
+                });
+
+        webTestClient.get()
+                .uri(MOVIE_REVIEW_URL + "/stats/batch?movieInfoId=abc,1")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBody()
+                .jsonPath("$.1.count").isEqualTo(1)
+                .jsonPath("$.abc.count").isEqualTo(0);
+
+        // only non numeric ids : no query at all
+        webTestClient.get()
+                .uri(MOVIE_REVIEW_URL + "/batch?movieInfoId=abc,def&limit=2")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBody()
+                .jsonPath("$.abc").isEmpty()
+                .jsonPath("$.def").isEmpty();
+        verify(reviewReactiveRepository, never()).findReviews(any(), any(), anyInt());
     }
 
+    @Test
+    void test_getTopReviewsByMovieInfoId() {
+        // given
+        var topReviews = List.of(
+                new Review("1", 1L, "Awesome Movie", 9.5),
+                new Review("2", 1L, "Awesome Movie1", 9.0));
+
+        // when : limit and sort are pushed down to the repository, limit capped at reviews.page.maxLimit
+        when(reviewReactiveRepository.findReviews(eq(1L), eq(Sort.by(Sort.Direction.DESC, "rating")), eq(500)))
+                .thenReturn(Flux.fromIterable(topReviews));
+
+        // then
+        webTestClient.get()
+                .uri(MOVIE_REVIEW_URL + "?movieInfoId=1&limit=10000&sort=rating")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBodyList(Review.class)
+                .isEqualTo(topReviews);
+
+        webTestClient.get()
+                .uri(MOVIE_REVIEW_URL + "?movieInfoId=1&limit=10&sort=worst")
+                .exchange()
+                .expectStatus()
+                .isBadRequest();
+    }
+
+    @Test
+    void test_bulkAddReviews() {
+        // given : a valid review, one without movieInfoId and one rejected by Mongo
+        var upload = "{\"movieInfoId\":1,\"comment\":\"Awesome Movie\",\"rating\":9.0}\n"
+                + "{\"comment\":\"No movie\",\"rating\":5.0}\n"
+                + "{\"reviewId\":\"abc\",\"movieInfoId\":2,\"comment\":\"Duplicate\",\"rating\":3.0}\n";
+
+        // when
+        when(reviewReactiveRepository.bulkInsert(anyList()))
+                .thenReturn(Mono.just(List.of(BulkItemResult.written("def", BulkItemStatus.CREATED),
+                        BulkItemResult.failed("abc", "E11000 duplicate key error"))));
+        when(reviewSummaryRepository.applyChanges(anyCollection(), anyCollection())).thenReturn(Mono.empty());
+
+        // then : one result per line
+        var results = webTestClient.post()
+                .uri(MOVIE_REVIEW_URL + "/bulk")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .bodyValue(upload)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .returnResult(BulkItemResult.class)
+                .getResponseBody();
+
+        StepVerifier.create(results)
+                .expectNext(new BulkItemResult(1, "def", BulkItemStatus.CREATED, null))
+                .expectNext(new BulkItemResult(2, null, BulkItemStatus.INVALID, "Review.movieInfoId must not be null"))
+                .expectNext(new BulkItemResult(3, "abc", BulkItemStatus.FAILED, "E11000 duplicate key error"))
+                .verifyComplete();
+
+        // only the inserted review moves the summaries
+        verify(reviewSummaryRepository).applyChanges(eq(List.of()),
+                argThat(added -> added.size() == 1 && added.iterator().next().getMovieInfoId() == 1L));
+    }
 }
@@ -0,0 +1,71 @@
+package com.reactivespring.summary;
+
+import com.reactivespring.domain.ReviewSummary;
+import com.reactivespring.repository.ReviewReactiveRepository;
+import com.reactivespring.repository.ReviewSummaryRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ReviewSummaryRebuilderTest {
+
+    @Mock
+    private ReviewReactiveRepository reviewReactiveRepository;
+
+    @Mock
+    private ReviewSummaryRepository reviewSummaryRepository;
+
+    @InjectMocks
+    private ReviewSummaryRebuilder reviewSummaryRebuilder;
+
+    @Test
+    void rebuild_rewritesDriftedAndRemovesOrphanedSummaries() {
+        ReflectionTestUtils.setField(reviewSummaryRebuilder, "maxReportedIds", 100);
+        var upToDate = new ReviewSummary(1L, 2, 2, 17.0, Map.of("8", 1L, "9", 1L));
+        var recomputed = new ReviewSummary(2L, 1, 1, 7.0, Map.of("7", 1L));
+        var drifted = new ReviewSummary(2L, 2, 2, 15.0, Map.of("7", 1L, "8", 1L));
+        var orphaned = new ReviewSummary(3L, 0, 0, 0.0, Map.of("5", 0L));
+
+        when(reviewReactiveRepository.computeSummaries(isNull())).thenReturn(Flux.just(upToDate, recomputed));
+        // the stored summary of movie 1 only differs by a zeroed bucket and rounding
+        when(reviewSummaryRepository.findAll()).thenReturn(Flux.just(
+                new ReviewSummary(1L, 2, 2, 17.0000000001, Map.of("8", 1L, "9", 1L, "6", 0L)), drifted, orphaned));
+        when(reviewSummaryRepository.save(any(ReviewSummary.class))).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+        when(reviewSummaryRepository.delete(any(ReviewSummary.class))).thenReturn(Mono.empty());
+
+        StepVerifier.create(reviewSummaryRebuilder.rebuild())
+                .expectNextMatches(report -> report.getRecomputed() == 2 && report.getDrifted() == 1
+                        && report.getRemoved() == 1 && report.getDriftedMovieInfoIds().equals(List.of(2L, 3L)))
+                .verifyComplete();
+
+        verify(reviewSummaryRepository).save(recomputed);
+        verify(reviewSummaryRepository, never()).save(upToDate);
+        verify(reviewSummaryRepository).delete(orphaned);
+    }
+
+    @Test
+    void matches_missingSummaryIsDrift() {
+        var recomputed = new ReviewSummary(1L, 1, 1, 9.0, Map.of("9", 1L));
+
+        assertFalse(ReviewSummaryRebuilder.matches(null, recomputed));
+        assertTrue(ReviewSummaryRebuilder.matches(new ReviewSummary(1L, 1, 1, 9.0, Map.of("9", 1L)), recomputed));
+    }
+}
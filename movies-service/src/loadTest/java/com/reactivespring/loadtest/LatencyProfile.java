@@ -0,0 +1,48 @@
+package com.reactivespring.loadtest;
+
+import lombok.Getter;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Response time and failure rate of a stub backend. Latencies are log-normal, fitted on a median and a p99 : a long
+// right tail like real services, without a hard maximum
+@Getter
+public class LatencyProfile {
+
+    // z-score of the 99th percentile of a standard normal distribution
+    private static final double Z_99 = 2.3263;
+
+    private final Duration median;
+    private final Duration p99;
+    private final double errorRate;
+
+    private final double sigma;
+
+    public LatencyProfile(Duration median, Duration p99, double errorRate) {
+        if (p99.compareTo(median) < 0) {
+            throw new IllegalArgumentException("p99 " + p99 + " is lower than the median " + median);
+        }
+        this.median = median;
+        this.p99 = p99;
+        this.errorRate = errorRate;
+        this.sigma = median.isZero() ? 0 : Math.log((double) p99.toNanos() / median.toNanos()) / Z_99;
+    }
+
+    public Duration sample() {
+        if (median.isZero()) {
+            return Duration.ZERO;
+        }
+        var gaussian = ThreadLocalRandom.current().nextGaussian();
+        return Duration.ofNanos((long) (median.toNanos() * Math.exp(sigma * gaussian)));
+    }
+
+    public boolean failure() {
+        return errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate;
+    }
+
+    @Override
+    public String toString() {
+        return "median=" + median.toMillis() + "ms p99=" + p99.toMillis() + "ms errorRate=" + errorRate;
+    }
+}
@@ -0,0 +1,56 @@
+package com.reactivespring.loadtest;
+
+import lombok.Getter;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+
+// Outcome of one measured run : latencies in microseconds, from the intended start of each request
+@Getter
+public class LoadReport {
+
+    private final String label;
+    private final int targetRate;
+    private final Duration elapsed;
+    private final Histogram histogram;
+    // http status ("200", "503") or client side failure ("timeout", "error") -> number of requests
+    private final Map<String, Long> outcomes;
+
+    public LoadReport(String label, int targetRate, Duration elapsed, Histogram histogram, Map<String, Long> outcomes) {
+        this.label = label;
+        this.targetRate = targetRate;
+        this.elapsed = elapsed;
+        this.histogram = histogram;
+        this.outcomes = outcomes;
+    }
+
+    public double throughput() {
+        return histogram.getTotalCount() * 1_000_000_000.0 / elapsed.toNanos();
+    }
+
+    public String summary() {
+        return String.format("[%s] target %d req/s, achieved %.1f req/s, %d requests %s%n"
+                        + "    latency ms : p50 %.2f  p90 %.2f  p99 %.2f  p99.9 %.2f  p99.99 %.2f  max %.2f",
+                label, targetRate, throughput(), histogram.getTotalCount(), outcomes,
+                millis(50), millis(90), millis(99), millis(99.9), millis(99.99), histogram.getMaxValue() / 1000.0);
+    }
+
+    // full percentile distribution in milliseconds, the .hgrm format read by the HdrHistogram plotter
+    public Path write(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        var file = directory.resolve(label.replaceAll("[^A-Za-z0-9=.-]+", "_") + ".hgrm");
+        try (var out = new PrintStream(Files.newOutputStream(file))) {
+            histogram.outputPercentileDistribution(out, 1000.0);
+        }
+        return file;
+    }
+
+    private double millis(double percentile) {
+        return histogram.getValueAtPercentile(percentile) / 1000.0;
+    }
+}
@@ -0,0 +1,127 @@
+package com.reactivespring.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.reactivespring.MoviesServiceApplication;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.netty.resources.LoopResources;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+
+// End to end load test of GET /v1/movies/{id} : movies-service runs in process against StubBackend, driven at a fixed
+// rate by OpenLoopDriver. The service is restarted (fresh pools, circuit breakers, caches) for every combination of
+// load.sweep.maxConnections x load.sweep.responseTimeout, applied to both downstreams, to compare their tails.
+//
+// ./gradlew :movies-service:loadTest -Pload.rate=1000 -Pload.sweep.maxConnections=10,50,200 -Pstub.reviews.p99=300ms
+// Any movies-service property can be overridden the same way (-PrestClient.moviesInfoCache.enabled=true)
+@Slf4j
+public class LoadTest {
+
+    public static void main(String[] args) throws Exception {
+        var rate = Integer.getInteger("load.rate", 500);
+        var warmup = duration("load.warmup", "10s");
+        var duration = duration("load.duration", "30s");
+        var movieIds = Integer.getInteger("load.movieIds", 1000);
+        var clientTimeout = duration("load.clientTimeout", "10s");
+        var reportDirectory = Path.of(System.getProperty("load.reportDirectory", "build/loadTest"));
+        var maxConnectionsSweep = list("load.sweep.maxConnections", "10,50,100");
+        var responseTimeoutSweep = list("load.sweep.responseTimeout", "3s");
+
+        var objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+        var stubBackend = new StubBackend(objectMapper, profile("stub.moviesInfo", "5ms", "50ms"),
+                profile("stub.reviews", "10ms", "100ms"), Integer.getInteger("stub.reviews.count", 10));
+        stubBackend.start();
+
+        // the driver gets its own loops and a large pool : it must never be what limits the load, and it outlives the
+        // movies-service contexts which dispose the global Reactor Netty resources when closed
+        var driverLoops = LoopResources.create("load-driver");
+        var driverConnections = ConnectionProvider.builder("load-driver")
+                .maxConnections(10_000)
+                .pendingAcquireMaxCount(-1)
+                .build();
+        var driverClient = WebClient.builder()
+                .clientConnector(new ReactorClientHttpConnector(HttpClient.create(driverConnections).runOn(driverLoops)))
+                .build();
+        var driver = new OpenLoopDriver(driverClient, clientTimeout);
+
+        List<LoadReport> reports = new ArrayList<>();
+        try {
+            for (var maxConnections : maxConnectionsSweep) {
+                for (var responseTimeout : responseTimeoutSweep) {
+                    var label = "maxConnections=" + maxConnections + " responseTimeout=" + responseTimeout;
+                    reports.add(run(label, stubBackend, driver, rate, warmup, duration, movieIds, reportDirectory,
+                            "--restClient.moviesInfo.maxConnections=" + maxConnections,
+                            "--restClient.reviews.maxConnections=" + maxConnections,
+                            "--restClient.moviesInfo.responseTimeout=" + responseTimeout,
+                            "--restClient.reviews.responseTimeout=" + responseTimeout));
+                }
+            }
+        } finally {
+            driverConnections.dispose();
+            driverLoops.dispose();
+            stubBackend.stop();
+        }
+
+        log.info("Sweep results :\n{}", reports.stream()
+                .map(LoadReport::summary)
+                .collect(Collectors.joining("\n")));
+    }
+
+    private static LoadReport run(String label, StubBackend stubBackend, OpenLoopDriver driver, int rate,
+                                  Duration warmup, Duration duration, int movieIds, Path reportDirectory,
+                                  String... sweepArgs) throws Exception {
+        List<String> args = new ArrayList<>(List.of(
+                "--server.port=0",
+                "--restClient.moviesInfoUrl=" + stubBackend.moviesInfoUrl(),
+                "--restClient.reviewsUrl=" + stubBackend.reviewsUrl(),
+                // every request reaches the stubs unless the cache is turned back on, the stubs have no event stream
+                "--restClient.moviesInfoCache.enabled=" + System.getProperty("restClient.moviesInfoCache.enabled", "false"),
+                "--restClient.moviesInfoCache.invalidation.enabled=false",
+                "--logging.level.root=WARN",
+                "--logging.level.com.reactivespring.loadtest=INFO"));
+        args.addAll(Arrays.asList(sweepArgs));
+
+        try (var context = new SpringApplicationBuilder(MoviesServiceApplication.class).run(args.toArray(String[]::new))) {
+            var moviesUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port") + "/v1/movies/";
+            log.info("[{}] warming up for {}s", label, warmup.toSeconds());
+            driver.warmUp(rate, warmup, request -> moviesUrl + randomMovieId(movieIds));
+            log.info("[{}] measuring {} req/s for {}s", label, rate, duration.toSeconds());
+            var report = driver.run(label, rate, duration, request -> moviesUrl + randomMovieId(movieIds));
+            log.info("{}\n    histogram : {}", report.summary(), report.write(reportDirectory));
+            return report;
+        }
+    }
+
+    private static int randomMovieId(int movieIds) {
+        return ThreadLocalRandom.current().nextInt(movieIds) + 1;
+    }
+
+    private static LatencyProfile profile(String prefix, String defaultMedian, String defaultP99) {
+        return new LatencyProfile(duration(prefix + ".median", defaultMedian), duration(prefix + ".p99", defaultP99),
+                Double.parseDouble(System.getProperty(prefix + ".errorRate", "0.0")));
+    }
+
+    // 500ms, 3s, PT1M ... as in application.yml
+    private static Duration duration(String name, String defaultValue) {
+        return DurationStyle.detectAndParse(System.getProperty(name, defaultValue));
+    }
+
+    private static List<String> list(String name, String defaultValue) {
+        return Arrays.stream(System.getProperty(name, defaultValue).split(","))
+                .map(String::trim)
+                .filter(value -> !value.isEmpty())
+                .collect(Collectors.toList());
+    }
+}
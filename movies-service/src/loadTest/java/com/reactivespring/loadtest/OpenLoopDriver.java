@@ -0,0 +1,99 @@
+package com.reactivespring.loadtest;
+
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Recorder;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongFunction;
+
+// Sends requests at a fixed rate whatever the response times (open loop) : a slow response never delays the next
+// request, like independent users. Each request has an intended start on the rate schedule and its latency is measured
+// from it, so a request sent late because the driver fell behind still counts its wait (no coordinated omission)
+@Slf4j
+public class OpenLoopDriver {
+
+    // schedule granularity : the requests due since the previous tick are sent together
+    private static final Duration TICK = Duration.ofMillis(1);
+
+    private static final int WARMUP_STEPS = 10;
+
+    private final WebClient webClient;
+
+    private final Duration timeout;
+
+    public OpenLoopDriver(WebClient webClient, Duration timeout) {
+        this.webClient = webClient;
+        this.timeout = timeout;
+    }
+
+    // rate stepped up from a tenth to all of it : a cold service hit at full rate fills its bulkheads and opens its
+    // circuit breakers, which would then still be open for the measured run
+    public void warmUp(int rate, Duration duration, LongFunction<String> uri) {
+        var step = duration.dividedBy(WARMUP_STEPS);
+        for (int stepNumber = 1; stepNumber <= WARMUP_STEPS; stepNumber++) {
+            run("warmup", Math.max(1, rate * stepNumber / WARMUP_STEPS), step, uri);
+        }
+    }
+
+    // uri : request number -> uri of that request
+    public LoadReport run(String label, int rate, Duration duration, LongFunction<String> uri) {
+        var total = rate * duration.toMillis() / 1000;
+        var periodNanos = 1_000_000_000L / rate;
+        var recorder = new Recorder(3);
+        Map<String, LongAdder> outcomes = new ConcurrentHashMap<>();
+        var scheduled = new AtomicLong();
+        var start = System.nanoTime();
+
+        var intendedStarts = Flux.interval(TICK)
+                // ticks the driver could not keep up with are caught up by the next one
+                .onBackpressureDrop()
+                .concatMapIterable(tick -> {
+                    var due = Math.min(total, (System.nanoTime() - start) / periodNanos + 1);
+                    List<Long> starts = new ArrayList<>();
+                    for (long request = scheduled.get(); request < due; request++) {
+                        starts.add(request);
+                    }
+                    scheduled.set(due);
+                    return starts;
+                })
+                .take(total);
+
+        intendedStarts
+                .flatMap(request -> send(uri.apply(request))
+                        .doOnNext(outcome -> {
+                            var latencyNanos = System.nanoTime() - (start + request * periodNanos);
+                            recorder.recordValue(Math.max(1, latencyNanos / 1000));
+                            outcomes.computeIfAbsent(outcome, key -> new LongAdder()).increment();
+                        }), Integer.MAX_VALUE)
+                .then()
+                .block();
+
+        var elapsed = Duration.ofNanos(System.nanoTime() - start);
+        Map<String, Long> outcomeCounts = new TreeMap<>();
+        outcomes.forEach((outcome, count) -> outcomeCounts.put(outcome, count.sum()));
+        return new LoadReport(label, rate, elapsed, recorder.getIntervalHistogram(), outcomeCounts);
+    }
+
+    private Mono<String> send(String uri) {
+        return webClient.get()
+                .uri(uri)
+                .exchangeToMono(response -> response.releaseBody()
+                        .thenReturn(String.valueOf(response.rawStatusCode())))
+                .timeout(timeout)
+                .onErrorResume(ex -> {
+                    log.debug("Request {} failed : {}", uri, ex.toString());
+                    return Mono.just(ex instanceof TimeoutException ? "timeout" : "error");
+                });
+    }
+}
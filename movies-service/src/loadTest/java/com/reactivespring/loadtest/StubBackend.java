@@ -0,0 +1,144 @@
+package com.reactivespring.loadtest;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewStats;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.QueryStringDecoder;
+import lombok.extern.slf4j.Slf4j;
+import org.reactivestreams.Publisher;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.http.server.HttpServerRequest;
+import reactor.netty.http.server.HttpServerResponse;
+import reactor.netty.resources.LoopResources;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+// In-process stand-ins for movies-info-service and movies-review-service : the endpoints MoviesController calls for
+// GET /v1/movies/{id}, answered after a latency drawn from their LatencyProfile, or with a 500 at its error rate.
+// Bodies are fixed, only the ids change, so the stubs cost next to nothing next to the service under test
+@Slf4j
+public class StubBackend {
+
+    private final ObjectMapper objectMapper;
+
+    private final LatencyProfile moviesInfoProfile;
+
+    private final LatencyProfile reviewsProfile;
+
+    private final int reviewsPerMovie;
+
+    // not the global Reactor Netty loops : closing a movies-service context disposes those
+    private LoopResources loopResources;
+
+    private DisposableServer moviesInfoServer;
+
+    private DisposableServer reviewsServer;
+
+    public StubBackend(ObjectMapper objectMapper, LatencyProfile moviesInfoProfile, LatencyProfile reviewsProfile,
+                       int reviewsPerMovie) {
+        this.objectMapper = objectMapper;
+        this.moviesInfoProfile = moviesInfoProfile;
+        this.reviewsProfile = reviewsProfile;
+        this.reviewsPerMovie = reviewsPerMovie;
+    }
+
+    public void start() {
+        loopResources = LoopResources.create("stub-backend");
+        moviesInfoServer = HttpServer.create()
+                .runOn(loopResources)
+                .port(0)
+                .route(routes -> routes
+                        .get("/v1/movieinfos/{id}", (request, response) -> respond(response, moviesInfoProfile,
+                                () -> movieInfo(request.param("id")))))
+                .bindNow();
+        reviewsServer = HttpServer.create()
+                .runOn(loopResources)
+                .port(0)
+                .route(routes -> routes
+                        .get("/v1/reviews/stats", (request, response) -> respond(response, reviewsProfile,
+                                () -> reviewStats(movieInfoId(request))))
+                        .get("/v1/reviews", (request, response) -> respond(response, reviewsProfile,
+                                () -> reviews(movieInfoId(request)))))
+                .bindNow();
+        log.info("Stub movies-info-service on port {} ({}), movies-review-service on port {} ({})",
+                moviesInfoServer.port(), moviesInfoProfile, reviewsServer.port(), reviewsProfile);
+    }
+
+    public String moviesInfoUrl() {
+        return "http://localhost:" + moviesInfoServer.port() + "/v1/movieinfos";
+    }
+
+    public String reviewsUrl() {
+        return "http://localhost:" + reviewsServer.port() + "/v1/reviews";
+    }
+
+    public void stop() {
+        if (moviesInfoServer != null) {
+            moviesInfoServer.disposeNow();
+        }
+        if (reviewsServer != null) {
+            reviewsServer.disposeNow();
+        }
+        if (loopResources != null) {
+            loopResources.dispose();
+        }
+    }
+
+    private Publisher<Void> respond(HttpServerResponse response, LatencyProfile profile, Supplier<Object> body) {
+        var failure = profile.failure();
+        return Mono.delay(profile.sample())
+                .flatMap(tick -> {
+                    if (failure) {
+                        return response.status(HttpResponseStatus.INTERNAL_SERVER_ERROR)
+                                .sendString(Mono.just("stub failure"))
+                                .then();
+                    }
+                    return response.header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                            .sendByteArray(Mono.just(toJson(body.get())))
+                            .then();
+                });
+    }
+
+    private static String movieInfoId(HttpServerRequest request) {
+        return new QueryStringDecoder(request.uri()).parameters().get("movieInfoId").get(0);
+    }
+
+    private MovieInfo movieInfo(String movieInfoId) {
+        return new MovieInfo(movieInfoId, "Movie " + movieInfoId, 2005,
+                List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15"));
+    }
+
+    private List<Review> reviews(String movieInfoId) {
+        var id = Long.valueOf(movieInfoId);
+        return LongStream.range(0, reviewsPerMovie)
+                .mapToObj(index -> new Review(movieInfoId + "-" + index, id, "Review " + index, (double) (index % 10)))
+                .collect(Collectors.toList());
+    }
+
+    private ReviewStats reviewStats(String movieInfoId) {
+        var histogram = LongStream.range(0, reviewsPerMovie)
+                .boxed()
+                .collect(Collectors.groupingBy(index -> (int) (index % 10), Collectors.counting()));
+        return new ReviewStats(Long.valueOf(movieInfoId), reviewsPerMovie, 4.5, histogram);
+    }
+
+    private byte[] toJson(Object body) {
+        try {
+            return objectMapper.writeValueAsBytes(body);
+        } catch (JsonProcessingException ex) {
+            throw Exceptions.propagate(ex);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.reactivespring.cache;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.reactivespring.config.RestClientProperties;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.exception.MoviesInfoClientException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.util.context.ContextView;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Function;
+
+// Bounded (W-TinyLFU) in-memory cache of MovieInfo keyed by movieId. Concurrent misses for the same id share one
+// in-flight load, and 404s are cached as Optional.empty() for a shorter TTL. Bound to Micrometer as cache=moviesinfo
+// (cache_gets by result, cache_puts, cache_evictions, cache_size in the Prometheus export).
+@Component
+@Slf4j
+public class MovieInfoCache implements MeterBinder {
+
+    static final String CACHE_NAME = "moviesinfo";
+
+    private static final int GENERATION_STRIPES = 1024;
+
+    // Generations bumped by every invalidation, per stripe of keys and for invalidateAll. A load that started under an
+    // older generation read the document before the write that invalidated it : its callers still get what it read,
+    // but it is removed from the cache as it completes instead of serving stale data for the whole ttl
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+
+    private final AtomicLong allGeneration = new AtomicLong();
+
+
+    private final boolean enabled;
+
+    private final AsyncCache<String, Optional<MovieInfo>> cache;
+
+    public MovieInfoCache(RestClientProperties restClientProperties) {
+        var settings = restClientProperties.getMoviesInfoCache();
+        this.enabled = settings.isEnabled();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(settings.getMaximumSize())
+                .expireAfter(new PositiveNegativeExpiry(settings.getTtl().toNanos(), settings.getNegativeTtl().toNanos()))
+                .recordStats()
+                .buildAsync();
+        log.info("MovieInfoCache enabled : {}, maximumSize : {}, ttl : {}, negativeTtl : {}", enabled,
+                settings.getMaximumSize(), settings.getTtl(), settings.getNegativeTtl());
+    }
+
+    public Mono<MovieInfo> get(String movieId, Function<String, Mono<MovieInfo>> loader) {
+        if (!enabled) {
+            return loader.apply(movieId);
+        }
+        // the first subscriber starts the load (with its own context), everybody else waits on the same future.
+        // copy() so that a cancelled subscriber does not cancel the shared load for the others
+        return Mono.deferContextual(contextView -> Mono.fromFuture(cache.get(movieId, (id, executor) -> load(id, loader, contextView))
+                        .copy()))
+                .flatMap(movieInfo -> movieInfo.map(Mono::just)
+                        .orElseGet(() -> Mono.error(new MoviesInfoClientException("No movieInfo available for the passed in Id :" + movieId,
+                                HttpStatus.NOT_FOUND.value()))));
+    }
+
+    public void invalidate(String movieId) {
+        generations.incrementAndGet(stripe(movieId));
+        cache.synchronous().invalidate(movieId);
+    }
+
+    public void invalidateAll() {
+        allGeneration.incrementAndGet();
+        cache.synchronous().invalidateAll();
+    }
+
+    // called by Spring Boot for every MeterRegistry, the meters read the Caffeine stats when scraped
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, CACHE_NAME);
+    }
+
+    public CacheStats stats() {
+        return cache.synchronous().stats();
+    }
+
+    public long estimatedSize() {
+        return cache.synchronous().estimatedSize();
+    }
+
+    private CompletableFuture<Optional<MovieInfo>> load(String movieId, Function<String, Mono<MovieInfo>> loader,
+                                                        ContextView contextView) {
+        int stripe = stripe(movieId);
+        long generation = generation(stripe);
+        // other errors fail the future, and Caffeine drops failed futures so the next call retries the load.
+        // An empty response completes with null, which is not cached either
+        CompletableFuture<Optional<MovieInfo>> future = loader.apply(movieId)
+                .map(Optional::of)
+                .onErrorResume(MoviesInfoClientException.class, ex -> ex.getStatusCode() == HttpStatus.NOT_FOUND.value()
+                        ? Mono.just(Optional.empty())
+                        : Mono.error(ex))
+                .contextWrite(contextView)
+                .toFuture();
+        future.thenRun(() -> {
+            if (generation(stripe) != generation) {
+                log.debug("Dropping movieInfo {} loaded before its invalidation", movieId);
+                cache.asMap().remove(movieId, future);
+            }
+        });
+        return future;
+    }
+
+    private long generation(int stripe) {
+        return allGeneration.get() + generations.get(stripe);
+    }
+
+    private static int stripe(String movieId) {
+        return (movieId.hashCode() & Integer.MAX_VALUE) % GENERATION_STRIPES;
+    }
+
+    private static class PositiveNegativeExpiry implements Expiry<String, Optional<MovieInfo>> {
+
+        private final long ttlNanos;
+        private final long negativeTtlNanos;
+
+        PositiveNegativeExpiry(long ttlNanos, long negativeTtlNanos) {
+            this.ttlNanos = ttlNanos;
+            this.negativeTtlNanos = negativeTtlNanos;
+        }
+
+        @Override
+        public long expireAfterCreate(String movieId, Optional<MovieInfo> movieInfo, long currentTime) {
+            return movieInfo.isPresent() ? ttlNanos : negativeTtlNanos;
+        }
+
+        @Override
+        public long expireAfterUpdate(String movieId, Optional<MovieInfo> movieInfo, long currentTime, long currentDuration) {
+            return expireAfterCreate(movieId, movieInfo, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String movieId, Optional<MovieInfo> movieInfo, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
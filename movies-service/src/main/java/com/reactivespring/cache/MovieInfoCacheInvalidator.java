@@ -0,0 +1,91 @@
+package com.reactivespring.cache;
+
+import com.reactivespring.config.RestClientProperties;
+import com.reactivespring.domain.MovieInfoEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Disposable;
+import reactor.netty.http.client.HttpClientRequest;
+import reactor.util.retry.Retry;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+
+// Follows the movies-info-service change feed and evicts MovieInfoCache entries as soon as they are written, so the
+// cache ttl only matters when the feed is down
+@Component
+@ConditionalOnProperty(name = "restClient.moviesInfoCache.invalidation.enabled", havingValue = "true")
+@Slf4j
+public class MovieInfoCacheInvalidator {
+
+    private WebClient webClient;
+
+    private MovieInfoCache movieInfoCache;
+
+    private String moviesInfoUrl;
+
+    private Duration maxBackoff;
+
+    private Duration responseTimeout;
+
+    private Disposable subscription;
+
+    public MovieInfoCacheInvalidator(@Qualifier("moviesInfoWebClient") WebClient webClient, MovieInfoCache movieInfoCache,
+                                     RestClientProperties restClientProperties) {
+        this.webClient = webClient;
+        this.movieInfoCache = movieInfoCache;
+        this.moviesInfoUrl = restClientProperties.getMoviesInfoUrl();
+        this.maxBackoff = restClientProperties.getMoviesInfoCache().getInvalidation().getMaxBackoff();
+        this.responseTimeout = restClientProperties.getMoviesInfoCache().getInvalidation().getResponseTimeout();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void subscribe() {
+        var url = moviesInfoUrl.concat("/events");
+        subscription = webClient.get()
+                .uri(url)
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .httpRequest(httpRequest -> httpRequest.<HttpClientRequest>getNativeRequest().responseTimeout(responseTimeout))
+                .retrieve()
+                .bodyToFlux(new ParameterizedTypeReference<ServerSentEvent<MovieInfoEvent>>() {
+                })
+                .doOnNext(this::onEvent)
+                // the feed never completes on its own : reconnect when it does, and back off while the service is down
+                .repeat()
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1))
+                        .maxBackoff(maxBackoff)
+                        .transientErrors(true) // back to the min backoff once the feed delivered events again
+                        .doBeforeRetry(retrySignal -> log.warn("MovieInfo change feed lost, reconnecting (attempt {}) : {}",
+                                retrySignal.totalRetries() + 1, retrySignal.failure().getMessage())))
+                .subscribe();
+    }
+
+    private void onEvent(ServerSentEvent<MovieInfoEvent> serverSentEvent) {
+        if ("connected".equals(serverSentEvent.event())) {
+            // anything written while we were not connected is unknown, so start from an empty cache
+            log.info("Connected to MovieInfo change feed, invalidating MovieInfoCache");
+            movieInfoCache.invalidateAll();
+            return;
+        }
+        var movieInfoEvent = serverSentEvent.data();
+        if (movieInfoEvent != null && movieInfoEvent.getMovieInfoId() != null) {
+            log.debug("Evicting movieInfo {} on {}", movieInfoEvent.getMovieInfoId(), movieInfoEvent.getEventType());
+            movieInfoCache.invalidate(movieInfoEvent.getMovieInfoId());
+        }
+    }
+
+    @PreDestroy
+    public void dispose() {
+        if (subscription != null) {
+            subscription.dispose();
+        }
+    }
+}
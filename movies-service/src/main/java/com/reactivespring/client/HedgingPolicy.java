@@ -0,0 +1,124 @@
+package com.reactivespring.client;
+
+import com.reactivespring.config.RestClientProperties;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+// Hedged requests : when the first call has not answered within the tracked latency percentile (p95 by default), an
+// identical second call is sent and whichever answers first wins, the other one is cancelled. Hedges are capped by
+// their own token bucket to maxHedgeRatio of the requests. Only meant for idempotent reads.
+// The tracked percentile is the one of the calls that completed : a primary cancelled because its hedge won is not in
+// it, so under sustained slowness the delay is biased low (the latency of the answers used, not of every call sent)
+// and hedges fire earlier than the percentile says. Counting the cancelled primaries instead would feed back : they
+// all last at least the delay, so the delay would keep growing while primaries are stuck. The budget bounds the cost.
+// Bound to Micrometer as movies.hedging.requests / .fired / .won counters and a movies.hedging.delay gauge, tagged by
+// downstream.
+@Slf4j
+public class HedgingPolicy implements MeterBinder {
+
+    private final String name;
+
+    private final boolean enabled;
+    private final long minDelayNanos;
+    private final LatencyTracker latencyTracker;
+    private final RetryBudget hedgeBudget;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong hedgesFired = new AtomicLong();
+    private final AtomicLong hedgesWon = new AtomicLong();
+
+    public HedgingPolicy(String name, RestClientProperties.HedgingSettings settings) {
+        this.name = name;
+        this.enabled = settings.isEnabled();
+        this.minDelayNanos = settings.getMinDelay().toNanos();
+        this.latencyTracker = new LatencyTracker(settings.getSampleSize(), settings.getPercentile(), settings.getRecomputeEvery());
+        this.hedgeBudget = new RetryBudget(settings.getMaxHedgeRatio(), settings.getMaxTokens());
+    }
+
+    public <T> Mono<T> hedge(Supplier<Mono<T>> call) {
+        if (!enabled) {
+            return call.get();
+        }
+        return Mono.defer(() -> {
+            requests.incrementAndGet();
+            hedgeBudget.deposit();
+            long start = System.nanoTime();
+            // only calls that completed are recorded (see the bias above)
+            var primary = call.get()
+                    .doOnSuccess(value -> latencyTracker.record(System.nanoTime() - start));
+
+            long delayNanos = latencyTracker.percentileNanos();
+            if (delayNanos < 0) {
+                // not enough samples yet to know what slow means
+                return primary;
+            }
+            // the hedge never completes on its own (no budget, error or empty) : the primary's outcome is then the result
+            var hedge = Mono.delay(Duration.ofNanos(Math.max(delayNanos, minDelayNanos)))
+                    .flatMap(tick -> {
+                        if (!hedgeBudget.tryWithdraw()) {
+                            return Mono.<T>never();
+                        }
+                        hedgesFired.incrementAndGet();
+                        long hedgeStart = System.nanoTime();
+                        // the hedge is a call like any other, its latency counts from when it was sent
+                        return call.get()
+                                .doOnSuccess(value -> latencyTracker.record(System.nanoTime() - hedgeStart))
+                                .doOnNext(value -> hedgesWon.incrementAndGet())
+                                .onErrorResume(ex -> {
+                                    log.debug("Hedged call failed : {}", ex.getMessage());
+                                    return Mono.never();
+                                })
+                                .switchIfEmpty(Mono.never());
+                    });
+            return Mono.firstWithSignal(primary, hedge);
+        });
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("movies.hedging.requests", requests, AtomicLong::get)
+                .tag("downstream", name)
+                .description("Requests going through the hedging policy")
+                .register(registry);
+        FunctionCounter.builder("movies.hedging.fired", hedgesFired, AtomicLong::get)
+                .tag("downstream", name)
+                .description("Hedged calls sent")
+                .register(registry);
+        FunctionCounter.builder("movies.hedging.won", hedgesWon, AtomicLong::get)
+                .tag("downstream", name)
+                .description("Hedged calls that answered before their primary")
+                .register(registry);
+        // NaN until enough calls were recorded
+        Gauge.builder("movies.hedging.delay", this, policy -> policy.getHedgeDelay() == null
+                        ? Double.NaN : policy.getHedgeDelay().toNanos() / 1e9)
+                .tag("downstream", name)
+                .baseUnit("seconds")
+                .description("Delay before a hedged call is sent")
+                .register(registry);
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public long getHedgesFired() {
+        return hedgesFired.get();
+    }
+
+    public long getHedgesWon() {
+        return hedgesWon.get();
+    }
+
+    public Duration getHedgeDelay() {
+        long delayNanos = latencyTracker.percentileNanos();
+        return delayNanos < 0 ? null : Duration.ofNanos(Math.max(delayNanos, minDelayNanos));
+    }
+}
@@ -0,0 +1,47 @@
+package com.reactivespring.client;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Sliding window of the last `sampleSize` latencies. The percentile is recomputed every `recomputeEvery` samples by
+// the recording thread, so reading it on the request path is just a volatile read.
+public class LatencyTracker {
+
+    private final AtomicLongArray samples;
+    private final AtomicLong recorded = new AtomicLong();
+    private final double percentile;
+    private final int recomputeEvery;
+
+    private volatile long percentileNanos = -1;
+
+    public LatencyTracker(int sampleSize, double percentile, int recomputeEvery) {
+        this.samples = new AtomicLongArray(sampleSize);
+        this.percentile = percentile;
+        this.recomputeEvery = recomputeEvery;
+    }
+
+    public void record(long latencyNanos) {
+        long count = recorded.incrementAndGet();
+        samples.set((int) ((count - 1) % samples.length()), latencyNanos);
+        if (count % recomputeEvery == 0) {
+            percentileNanos = computePercentile(count);
+        }
+    }
+
+    // -1 until the first recompute
+    public long percentileNanos() {
+        return percentileNanos;
+    }
+
+    private long computePercentile(long count) {
+        int size = (int) Math.min(count, samples.length());
+        long[] window = new long[size];
+        for (int i = 0; i < size; i++) {
+            window[i] = samples.get(i);
+        }
+        Arrays.sort(window);
+        int rank = (int) Math.ceil(percentile * size) - 1;
+        return window[Math.max(0, Math.min(rank, size - 1))];
+    }
+}
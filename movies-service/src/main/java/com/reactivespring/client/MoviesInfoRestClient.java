@@ -1,29 +1,80 @@
 package com.reactivespring.client;
 
+import com.reactivespring.cache.MovieInfoCache;
+import com.reactivespring.config.RestClientProperties;
 import com.reactivespring.domain.MovieInfo;
 import com.reactivespring.exception.MoviesInfoClientException;
 import com.reactivespring.exception.MoviesInfoServerException;
+import com.reactivespring.logging.SignalLogging;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.reactor.bulkhead.operator.BulkheadOperator;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+import java.util.Map;
+
 @Component
 @Slf4j
 public class MoviesInfoRestClient {
 
     private WebClient webClient;
 
-    @Value("${restClient.moviesInfoUrl}")
+    private MovieInfoCache movieInfoCache;
+
+    private CircuitBreaker circuitBreaker;
+
+    private Bulkhead bulkhead;
+
+    private RetryPolicy retryPolicy;
+
+    private SignalLogging signalLogging;
+
+    private HedgingPolicy hedgingPolicy;
+
     private String moviesInfoUrl;
 
-    public MoviesInfoRestClient(WebClient webClient) {
+    public MoviesInfoRestClient(@Qualifier("moviesInfoWebClient") WebClient webClient, MovieInfoCache movieInfoCache,
+                                @Qualifier("moviesInfoCircuitBreaker") CircuitBreaker circuitBreaker,
+                                @Qualifier("moviesInfoBulkhead") Bulkhead bulkhead,
+                                @Qualifier("moviesInfoRetryPolicy") RetryPolicy retryPolicy,
+                                @Qualifier("moviesInfoHedgingPolicy") HedgingPolicy hedgingPolicy,
+                                SignalLogging signalLogging, RestClientProperties restClientProperties) {
         this.webClient = webClient;
+        this.movieInfoCache = movieInfoCache;
+        this.circuitBreaker = circuitBreaker;
+        this.bulkhead = bulkhead;
+        this.retryPolicy = retryPolicy;
+        this.signalLogging = signalLogging;
+        this.hedgingPolicy = hedgingPolicy;
+        this.moviesInfoUrl = restClientProperties.getMoviesInfoUrl();
     }
 
+    // served from MovieInfoCache, only misses go over http to movies-info-service
     public Mono<MovieInfo> retrieveMovieInfo(String movieId) {
+        return movieInfoCache.get(movieId, this::fetchMovieInfo);
+    }
+
+    private Mono<MovieInfo> fetchMovieInfo(String movieId) {
+        // a hedged call takes a single bulkhead permit and counts once for the circuit breaker
+        var movieInfoMono = hedgingPolicy.hedge(() -> requestMovieInfo(movieId))
+                // bulkhead inside the circuit breaker : CallNotPermittedException when open, BulkheadFullException when
+                // too many calls are in flight. Both surface as 503 through GlobalErrorHandler
+                .transformDeferred(BulkheadOperator.of(bulkhead))
+                .transformDeferred(CircuitBreakerOperator.of(circuitBreaker))
+                // every attempt goes through the circuit breaker, so an open circuit also stops the retries
+                .transform(retryPolicy::retryMono);
+        return signalLogging.mono(movieInfoMono, "signals.MoviesInfoRestClient.retrieveMovieInfo");
+    }
+
+    private Mono<MovieInfo> requestMovieInfo(String movieId) {
         var url = moviesInfoUrl.concat("/{movieId}");
         return webClient.get()
                 .uri(url, movieId)
@@ -47,8 +98,27 @@ public class MoviesInfoRestClient {
                                     + responseMessage)));
 
                 })
-                .bodyToMono(MovieInfo.class)
-                .log();
+                .bodyToMono(MovieInfo.class);
+    }
 
+    // one round-trip for many ids : response is keyed by movieInfoId, ids that do not exist are absent from the map
+    public Mono<Map<String, MovieInfo>> retrieveMovieInfos(List<String> movieIds) {
+        var url = moviesInfoUrl.concat("/batch");
+        return webClient.post()
+                .uri(url)
+                .bodyValue(movieIds)
+                .retrieve()
+                .onStatus(HttpStatus::is4xxClientError, clientResponse -> clientResponse.bodyToMono(String.class)
+                        .flatMap(responseMessage -> Mono.error(new MoviesInfoClientException(responseMessage,
+                                clientResponse.statusCode().value()))))
+                .onStatus(HttpStatus::is5xxServerError, clientResponse -> clientResponse.bodyToMono(String.class)
+                        .flatMap(responseMessage -> Mono.error(new MoviesInfoServerException("Server exception in MovieInfoService : "
+                                + responseMessage))))
+                .bodyToMono(new ParameterizedTypeReference<Map<String, MovieInfo>>() {
+                })
+                .transformDeferred(BulkheadOperator.of(bulkhead))
+                .transformDeferred(CircuitBreakerOperator.of(circuitBreaker))
+                // POST, but a read-only lookup : safe to retry like the GETs
+                .transform(retryPolicy::retryMono);
     }
 }
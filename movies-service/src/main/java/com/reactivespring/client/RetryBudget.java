@@ -0,0 +1,42 @@
+package com.reactivespring.client;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Token bucket shared by every rest client : each original request deposits `ratio` tokens and each retry withdraws
+// one, so retries can never exceed ratio * base traffic (plus the maxTokens burst). When a downstream is down every
+// call fails, the bucket drains and retries stop instead of multiplying the load on it.
+public class RetryBudget {
+
+    // fixed point, 1 token == SCALE units, so deposits smaller than a token do not get lost
+    private static final long SCALE = 1000;
+
+    private final long depositUnits;
+    private final long maxUnits;
+    private final AtomicLong balance;
+
+    public RetryBudget(double ratio, int maxTokens) {
+        this.depositUnits = Math.round(ratio * SCALE);
+        this.maxUnits = maxTokens * SCALE;
+        this.balance = new AtomicLong(maxUnits);
+    }
+
+    public void deposit() {
+        balance.updateAndGet(units -> Math.min(maxUnits, units + depositUnits));
+    }
+
+    public boolean tryWithdraw() {
+        while (true) {
+            long units = balance.get();
+            if (units < SCALE) {
+                return false;
+            }
+            if (balance.compareAndSet(units, units - SCALE)) {
+                return true;
+            }
+        }
+    }
+
+    public double availableTokens() {
+        return (double) balance.get() / SCALE;
+    }
+}
@@ -0,0 +1,70 @@
+package com.reactivespring.client;
+
+import com.reactivespring.config.RestClientProperties;
+import com.reactivespring.exception.MoviesInfoServerException;
+import com.reactivespring.exception.ReviewsServerException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+import reactor.util.retry.RetryBackoffSpec;
+
+// Exponential backoff with jitter for idempotent reads. Only 5xx and request errors (connect refused/timeout, response
+// timeout) are retried, 4xx, circuit breaker/bulkhead rejections and a saturated local connection pool are not. Every
+// retry also needs a token from the shared RetryBudget.
+@Slf4j
+public class RetryPolicy {
+
+    private final String name;
+    private final RetryBudget retryBudget;
+    private final RetryBackoffSpec retrySpec;
+
+    public RetryPolicy(String name, RestClientProperties.RetrySettings settings, RetryBudget retryBudget) {
+        this.name = name;
+        this.retryBudget = retryBudget;
+        this.retrySpec = Retry.backoff(settings.getMaxAttempts(), settings.getMinBackoff())
+                .maxBackoff(settings.getMaxBackoff())
+                .jitter(settings.getJitter())
+                .filter(ex -> isRetryable(ex) && retryBudget.tryWithdraw())
+                .doBeforeRetry(retrySignal -> log.warn("Retrying {} call (attempt {}) : {}", name,
+                        retrySignal.totalRetries() + 1, retrySignal.failure().getMessage()))
+                // keep the original exception so GlobalErrorHandler/fallbacks see the same types as without retries
+                .onRetryExhaustedThrow((retrySpec, retrySignal) -> retrySignal.failure());
+    }
+
+    public <T> Mono<T> retryMono(Mono<T> mono) {
+        // doOnSubscribe after retryWhen : runs once per original request, not once per attempt
+        return mono.retryWhen(retrySpec)
+                .doOnSubscribe(subscription -> retryBudget.deposit());
+    }
+
+    // retryable errors happen before the first element (status/connect), so a retry never replays emitted elements
+    public <T> Flux<T> retryFlux(Flux<T> flux) {
+        return flux.retryWhen(retrySpec)
+                .doOnSubscribe(subscription -> retryBudget.deposit());
+    }
+
+    static boolean isRetryable(Throwable ex) {
+        return ex instanceof MoviesInfoServerException
+                || ex instanceof ReviewsServerException
+                || (ex instanceof WebClientRequestException && !isPoolExhausted(ex));
+    }
+
+    // no connection within pendingAcquireTimeout, or the pending-acquire queue is full : our own pool is saturated, a
+    // retry would only queue one more request behind it. Matched by name, reactor-pool is shaded inside reactor-netty
+    private static boolean isPoolExhausted(Throwable ex) {
+        for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+            var exceptionName = cause.getClass().getSimpleName();
+            if (exceptionName.equals("PoolAcquireTimeoutException") || exceptionName.equals("PoolAcquirePendingLimitException")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return "RetryPolicy(" + name + ")";
+    }
+}
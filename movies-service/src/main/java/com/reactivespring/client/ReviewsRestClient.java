@@ -1,10 +1,20 @@
 package com.reactivespring.client;
 
+import com.reactivespring.config.RestClientProperties;
 import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewStats;
 import com.reactivespring.exception.ReviewsClientException;
 import com.reactivespring.exception.ReviewsServerException;
+import com.reactivespring.logging.SignalLogging;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.reactor.bulkhead.operator.BulkheadOperator;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
@@ -12,28 +22,52 @@ import org.springframework.web.util.UriComponentsBuilder;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+import java.util.Map;
+
 @Component
 @Slf4j
 public class ReviewsRestClient {
 
     private WebClient webClient;
 
-    @Value("${restClient.reviewsUrl}")
+    private CircuitBreaker circuitBreaker;
+
+    private Bulkhead bulkhead;
+
+    private RetryPolicy retryPolicy;
+
+    private SignalLogging signalLogging;
+
     private String reviewsUrl;
 
-    public ReviewsRestClient(WebClient webClient) {
+    public ReviewsRestClient(@Qualifier("reviewsWebClient") WebClient webClient,
+                             @Qualifier("reviewsCircuitBreaker") CircuitBreaker circuitBreaker,
+                             @Qualifier("reviewsBulkhead") Bulkhead bulkhead,
+                             @Qualifier("reviewsRetryPolicy") RetryPolicy retryPolicy,
+                             SignalLogging signalLogging, RestClientProperties restClientProperties) {
         this.webClient = webClient;
+        this.circuitBreaker = circuitBreaker;
+        this.bulkhead = bulkhead;
+        this.retryPolicy = retryPolicy;
+        this.signalLogging = signalLogging;
+        this.reviewsUrl = restClientProperties.getReviewsUrl();
     }
 
     // queryParam : movieInfoId
     public Flux<Review> retrieveReviews(String movieId) {
-        var url = UriComponentsBuilder
+        return retrieveReviews(movieId, 0, null);
+    }
+
+    // queryParams : movieInfoId, limit (0 : every review) and sort (rating | newest), applied by movies-review-service
+    public Flux<Review> retrieveReviews(String movieId, int limit, String sort) {
+        var url = topN(UriComponentsBuilder
                 .fromHttpUrl(reviewsUrl)
-                .queryParam("movieInfoId", movieId)
+                .queryParam("movieInfoId", movieId), limit, sort)
                 .buildAndExpand()
                 .toUriString();
 
-        return webClient.get()
+        var reviewFlux = webClient.get()
                 .uri(url)
                 .retrieve()
                 .onStatus(HttpStatus::is4xxClientError, clientResponse -> {
@@ -55,6 +89,123 @@ public class ReviewsRestClient {
 
                 })
                 .bodyToFlux(Review.class)
-                .log();
+                .transformDeferred(BulkheadOperator.of(bulkhead))
+                .transformDeferred(CircuitBreakerOperator.of(circuitBreaker))
+                .transform(retryPolicy::retryFlux)
+                // reviews are optional for a movie : when the circuit is open or the bulkhead is full, return what
+                // was received so far (nothing, or a partial list) instead of failing the whole movie
+                .onErrorResume(ReviewsRestClient::isRejected, ex -> {
+                    log.warn("Reviews for movieInfoId {} skipped : {}", movieId, ex.getMessage());
+                    return Flux.empty();
+                });
+        return signalLogging.flux(reviewFlux, "signals.ReviewsRestClient.retrieveReviews");
+    }
+
+    // queryParam : movieInfoId=1,2,3 -> reviews grouped by movieInfoId, every requested id is present in the map
+    public Mono<Map<String, List<Review>>> retrieveReviews(List<String> movieIds) {
+        return retrieveReviews(movieIds, 0, null);
+    }
+
+    // same with the top `limit` reviews of every movie in sort order
+    public Mono<Map<String, List<Review>>> retrieveReviews(List<String> movieIds, int limit, String sort) {
+        var url = topN(UriComponentsBuilder
+                .fromHttpUrl(reviewsUrl.concat("/batch"))
+                .queryParam("movieInfoId", String.join(",", movieIds)), limit, sort)
+                .buildAndExpand()
+                .toUriString();
+
+        return webClient.get()
+                .uri(url)
+                .retrieve()
+                .onStatus(HttpStatus::is4xxClientError, clientResponse -> clientResponse.bodyToMono(String.class)
+                        .flatMap(responseMessage -> Mono.error(new ReviewsClientException(responseMessage))))
+                .onStatus(HttpStatus::is5xxServerError, clientResponse -> clientResponse.bodyToMono(String.class)
+                        .flatMap(responseMessage -> Mono.error(new ReviewsServerException("Server exception in ReviewService : "
+                                + responseMessage))))
+                .bodyToMono(new ParameterizedTypeReference<Map<String, List<Review>>>() {
+                })
+                .transformDeferred(BulkheadOperator.of(bulkhead))
+                .transformDeferred(CircuitBreakerOperator.of(circuitBreaker))
+                .transform(retryPolicy::retryMono)
+                // an empty map means no reviews for every id of the chunk
+                .onErrorResume(ReviewsRestClient::isRejected, ex -> {
+                    log.warn("Reviews for movieInfoIds {} skipped : {}", movieIds, ex.getMessage());
+                    return Mono.just(Map.of());
+                });
+    }
+
+    // queryParam : movieInfoId. Stats only decorate a movie : no stats (empty) on a 4xx or when rejected
+    public Mono<ReviewStats> retrieveReviewStats(String movieId) {
+        var url = UriComponentsBuilder
+                .fromHttpUrl(reviewsUrl.concat("/stats"))
+                .queryParam("movieInfoId", movieId)
+                .buildAndExpand()
+                .toUriString();
+
+        return webClient.get()
+                .uri(url)
+                .retrieve()
+                // an empty Mono here would go on decoding the error body as ReviewStats : the body is released and
+                // the 4xx surfaces as an error (neither retried nor counted by the circuit breaker), resumed below
+                .onStatus(HttpStatus::is4xxClientError, clientResponse -> {
+                    log.info("Status Code is : {}", clientResponse.statusCode().value());
+                    return clientResponse.releaseBody()
+                            .then(Mono.error(new ReviewsClientException("Status code " + clientResponse.statusCode().value()
+                                    + " from ReviewService stats")));
+                })
+                .onStatus(HttpStatus::is5xxServerError, clientResponse -> clientResponse.bodyToMono(String.class)
+                        .flatMap(responseMessage -> Mono.error(new ReviewsServerException("Server exception in ReviewService : "
+                                + responseMessage))))
+                .bodyToMono(ReviewStats.class)
+                .transformDeferred(BulkheadOperator.of(bulkhead))
+                .transformDeferred(CircuitBreakerOperator.of(circuitBreaker))
+                .transform(retryPolicy::retryMono)
+                .onErrorResume(ReviewsClientException.class, ex -> Mono.empty())
+                .onErrorResume(ReviewsRestClient::isRejected, ex -> {
+                    log.warn("Review stats for movieInfoId {} skipped : {}", movieId, ex.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    // queryParam : movieInfoId=1,2,3 -> stats keyed by movieInfoId, every requested id is present in the map
+    public Mono<Map<String, ReviewStats>> retrieveReviewStats(List<String> movieIds) {
+        var url = UriComponentsBuilder
+                .fromHttpUrl(reviewsUrl.concat("/stats/batch"))
+                .queryParam("movieInfoId", String.join(",", movieIds))
+                .buildAndExpand()
+                .toUriString();
+
+        return webClient.get()
+                .uri(url)
+                .retrieve()
+                .onStatus(HttpStatus::is4xxClientError, clientResponse -> clientResponse.bodyToMono(String.class)
+                        .flatMap(responseMessage -> Mono.error(new ReviewsClientException(responseMessage))))
+                .onStatus(HttpStatus::is5xxServerError, clientResponse -> clientResponse.bodyToMono(String.class)
+                        .flatMap(responseMessage -> Mono.error(new ReviewsServerException("Server exception in ReviewService : "
+                                + responseMessage))))
+                .bodyToMono(new ParameterizedTypeReference<Map<String, ReviewStats>>() {
+                })
+                .transformDeferred(BulkheadOperator.of(bulkhead))
+                .transformDeferred(CircuitBreakerOperator.of(circuitBreaker))
+                .transform(retryPolicy::retryMono)
+                // an empty map means no stats for every id of the chunk
+                .onErrorResume(ReviewsRestClient::isRejected, ex -> {
+                    log.warn("Review stats for movieInfoIds {} skipped : {}", movieIds, ex.getMessage());
+                    return Mono.just(Map.of());
+                });
+    }
+
+    private static UriComponentsBuilder topN(UriComponentsBuilder uriBuilder, int limit, String sort) {
+        if (limit > 0) {
+            uriBuilder.queryParam("limit", limit);
+        }
+        if (sort != null) {
+            uriBuilder.queryParam("sort", sort);
+        }
+        return uriBuilder;
+    }
+
+    private static boolean isRejected(Throwable ex) {
+        return ex instanceof CallNotPermittedException || ex instanceof BulkheadFullException;
     }
 }
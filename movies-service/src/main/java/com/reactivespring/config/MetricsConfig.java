@@ -0,0 +1,41 @@
+package com.reactivespring.config;
+
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import org.springframework.boot.actuate.metrics.web.reactive.client.DefaultWebClientExchangeTagsProvider;
+import org.springframework.boot.actuate.metrics.web.reactive.client.WebClientExchangeTagsProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+// http.client.requests timers : the default tags (method, uri, status, outcome, clientName) plus the downstream the
+// WebClient belongs to, clientName being the same host for every service behind a gateway or on localhost
+@Configuration
+public class MetricsConfig {
+
+    // request attribute set by the WebClients of WebClientConfig
+    public static final String DOWNSTREAM_ATTRIBUTE = MetricsConfig.class.getName() + ".downstream";
+
+    private static final Tag DOWNSTREAM_NONE = Tag.of("downstream", "none");
+
+    @Bean
+    public WebClientExchangeTagsProvider webClientExchangeTagsProvider() {
+        var defaultTagsProvider = new DefaultWebClientExchangeTagsProvider();
+        return (request, response, throwable) -> {
+            var tags = Tags.of(defaultTagsProvider.tags(request, response, throwable));
+            return tags.and(withoutQuery(tags))
+                    .and(request.attribute(DOWNSTREAM_ATTRIBUTE)
+                            .map(downstream -> Tag.of("downstream", downstream.toString()))
+                            .orElse(DOWNSTREAM_NONE));
+        };
+    }
+
+    // the default uri tag is the uri template, or the url, query string included : one time series per movieInfoId for
+    // the reviews calls built with UriComponentsBuilder. Only the path is kept
+    private static Tags withoutQuery(Tags tags) {
+        return tags.stream()
+                .filter(tag -> tag.getKey().equals("uri") && tag.getValue().contains("?"))
+                .findFirst()
+                .map(tag -> Tags.of("uri", tag.getValue().substring(0, tag.getValue().indexOf('?'))))
+                .orElse(Tags.empty());
+    }
+}
@@ -0,0 +1,104 @@
+package com.reactivespring.config;
+
+import com.reactivespring.client.HedgingPolicy;
+import com.reactivespring.client.RetryBudget;
+import com.reactivespring.client.RetryPolicy;
+import com.reactivespring.exception.MoviesInfoClientException;
+import com.reactivespring.exception.ReviewsClientException;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+// Circuit breaker + bulkhead + retry policy per downstream, applied by the rest clients around every call
+@Configuration
+@Slf4j
+public class ResilienceConfig {
+
+    @Bean
+    public CircuitBreakerRegistry circuitBreakerRegistry() {
+        return CircuitBreakerRegistry.ofDefaults();
+    }
+
+    @Bean
+    public BulkheadRegistry bulkheadRegistry() {
+        return BulkheadRegistry.ofDefaults();
+    }
+
+    @Bean
+    public CircuitBreaker moviesInfoCircuitBreaker(CircuitBreakerRegistry circuitBreakerRegistry, RestClientProperties restClientProperties) {
+        return circuitBreaker(circuitBreakerRegistry, "movies-info", restClientProperties.getMoviesInfo().getCircuitBreaker());
+    }
+
+    @Bean
+    public CircuitBreaker reviewsCircuitBreaker(CircuitBreakerRegistry circuitBreakerRegistry, RestClientProperties restClientProperties) {
+        return circuitBreaker(circuitBreakerRegistry, "reviews", restClientProperties.getReviews().getCircuitBreaker());
+    }
+
+    @Bean
+    public Bulkhead moviesInfoBulkhead(BulkheadRegistry bulkheadRegistry, RestClientProperties restClientProperties) {
+        return bulkhead(bulkheadRegistry, "movies-info", restClientProperties.getMoviesInfo().getBulkhead());
+    }
+
+    @Bean
+    public Bulkhead reviewsBulkhead(BulkheadRegistry bulkheadRegistry, RestClientProperties restClientProperties) {
+        return bulkhead(bulkheadRegistry, "reviews", restClientProperties.getReviews().getBulkhead());
+    }
+
+    @Bean
+    public RetryBudget retryBudget(RestClientProperties restClientProperties) {
+        var retryBudgetSettings = restClientProperties.getRetryBudget();
+        return new RetryBudget(retryBudgetSettings.getRatio(), retryBudgetSettings.getMaxTokens());
+    }
+
+    @Bean
+    public RetryPolicy moviesInfoRetryPolicy(RestClientProperties restClientProperties, RetryBudget retryBudget) {
+        return new RetryPolicy("movies-info", restClientProperties.getMoviesInfo().getRetry(), retryBudget);
+    }
+
+    @Bean
+    public RetryPolicy reviewsRetryPolicy(RestClientProperties restClientProperties, RetryBudget retryBudget) {
+        return new RetryPolicy("reviews", restClientProperties.getReviews().getRetry(), retryBudget);
+    }
+
+    @Bean
+    public HedgingPolicy moviesInfoHedgingPolicy(RestClientProperties restClientProperties) {
+        return new HedgingPolicy("movies-info", restClientProperties.getMoviesInfo().getHedging());
+    }
+
+    public static CircuitBreaker circuitBreaker(CircuitBreakerRegistry circuitBreakerRegistry, String name,
+                                                RestClientProperties.CircuitBreakerSettings settings) {
+        var circuitBreakerConfig = CircuitBreakerConfig.custom()
+                .slidingWindowType(CircuitBreakerConfig.SlidingWindowType.COUNT_BASED)
+                .slidingWindowSize(settings.getSlidingWindowSize())
+                .minimumNumberOfCalls(settings.getMinimumNumberOfCalls())
+                .failureRateThreshold(settings.getFailureRateThreshold())
+                .slowCallRateThreshold(settings.getSlowCallRateThreshold())
+                .slowCallDurationThreshold(settings.getSlowCallDurationThreshold())
+                .waitDurationInOpenState(settings.getWaitDurationInOpenState())
+                .permittedNumberOfCallsInHalfOpenState(settings.getPermittedNumberOfCallsInHalfOpenState())
+                // 4xx are caller errors and a full bulkhead is local saturation : neither says the downstream is unhealthy
+                .ignoreExceptions(MoviesInfoClientException.class, ReviewsClientException.class, BulkheadFullException.class)
+                .build();
+        var circuitBreaker = circuitBreakerRegistry.circuitBreaker(name, circuitBreakerConfig);
+        circuitBreaker.getEventPublisher()
+                .onStateTransition(event -> log.warn("CircuitBreaker {} : {}", name, event.getStateTransition()));
+        return circuitBreaker;
+    }
+
+    public static Bulkhead bulkhead(BulkheadRegistry bulkheadRegistry, String name, RestClientProperties.BulkheadSettings settings) {
+        var bulkheadConfig = BulkheadConfig.custom()
+                .maxConcurrentCalls(settings.getMaxConcurrentCalls())
+                .maxWaitDuration(Duration.ZERO)
+                .build();
+        return bulkheadRegistry.bulkhead(name, bulkheadConfig);
+    }
+}
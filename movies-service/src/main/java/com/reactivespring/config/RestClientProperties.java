@@ -0,0 +1,118 @@
+package com.reactivespring.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+// restClient.* block of application.yml : urls, the movie info cache, plus connection pool/timeout settings for every
+// downstream service
+@Data
+@ConfigurationProperties(prefix = "rest-client")
+public class RestClientProperties {
+
+    private String moviesInfoUrl;
+    private String reviewsUrl;
+
+    private MoviesInfoCacheSettings moviesInfoCache = new MoviesInfoCacheSettings();
+
+    private Downstream moviesInfo = new Downstream();
+    private Downstream reviews = new Downstream();
+
+    private RetryBudgetSettings retryBudget = new RetryBudgetSettings();
+
+    @Data
+    public static class Downstream {
+        // pool : requests beyond maxConnections wait in the pending-acquire queue, and fail fast once it is full
+        // or when no connection frees up within pendingAcquireTimeout
+        private int maxConnections = 100;
+        private int pendingAcquireMaxCount = 500;
+        private Duration pendingAcquireTimeout = Duration.ofSeconds(2);
+        // eviction : idle connections are closed after maxIdleTime, every connection after maxLifeTime
+        private Duration maxIdleTime = Duration.ofSeconds(30);
+        private Duration maxLifeTime = Duration.ofMinutes(5);
+        private Duration evictionInterval = Duration.ofSeconds(30);
+        // timeouts
+        private Duration connectTimeout = Duration.ofSeconds(1);
+        private Duration responseTimeout = Duration.ofSeconds(3);
+        // HTTP/2 over cleartext, falls back to HTTP/1.1 when the server does not upgrade
+        private boolean h2c = false;
+
+        private CircuitBreakerSettings circuitBreaker = new CircuitBreakerSettings();
+        private BulkheadSettings bulkhead = new BulkheadSettings();
+        private RetrySettings retry = new RetrySettings();
+        private HedgingSettings hedging = new HedgingSettings();
+    }
+
+    @Data
+    public static class MoviesInfoCacheSettings {
+        // single movie info lookups (see MovieInfoCache), 404s are kept for the shorter negativeTtl
+        private boolean enabled = true;
+        private long maximumSize = 10000;
+        private Duration ttl = Duration.ofMinutes(10);
+        private Duration negativeTtl = Duration.ofSeconds(30);
+        private InvalidationSettings invalidation = new InvalidationSettings();
+    }
+
+    @Data
+    public static class InvalidationSettings {
+        // evictions driven by the movies-info-service change feed (see MovieInfoCacheInvalidator)
+        private boolean enabled = false;
+        private Duration maxBackoff = Duration.ofSeconds(30);
+        // the feed is idle between writes, so it gets a longer timeout than the regular movies-info calls (must be
+        // above the heartbeat interval of movies-info-service)
+        private Duration responseTimeout = Duration.ofSeconds(60);
+    }
+
+    @Data
+    public static class CircuitBreakerSettings {
+        // count based sliding window : the circuit opens when either rate is reached over the last slidingWindowSize
+        // calls (and at least minimumNumberOfCalls were made)
+        private int slidingWindowSize = 50;
+        private int minimumNumberOfCalls = 20;
+        private float failureRateThreshold = 50;
+        private float slowCallRateThreshold = 80;
+        private Duration slowCallDurationThreshold = Duration.ofSeconds(2);
+        // open -> half-open after waitDurationInOpenState, then a few probe calls decide whether it closes again
+        private Duration waitDurationInOpenState = Duration.ofSeconds(10);
+        private int permittedNumberOfCallsInHalfOpenState = 5;
+    }
+
+    @Data
+    public static class BulkheadSettings {
+        // calls over the limit are rejected straight away, nothing waits (non-blocking)
+        private int maxConcurrentCalls = 50;
+    }
+
+    @Data
+    public static class RetrySettings {
+        // retries on top of the original call, 0 disables retries
+        private int maxAttempts = 2;
+        private Duration minBackoff = Duration.ofMillis(100);
+        private Duration maxBackoff = Duration.ofSeconds(1);
+        // +/- fraction of the computed backoff, spreads retries of concurrent callers
+        private double jitter = 0.5;
+    }
+
+    @Data
+    public static class RetryBudgetSettings {
+        // retries allowed per original request, across all downstreams
+        private double ratio = 0.1;
+        // burst of retries allowed before the ratio kicks in
+        private int maxTokens = 100;
+    }
+
+    @Data
+    public static class HedgingSettings {
+        // opt-in, only used for single movie info lookups
+        private boolean enabled = false;
+        // the hedge is sent once the call is slower than this percentile of the recent latencies (never below minDelay)
+        private double percentile = 0.95;
+        private Duration minDelay = Duration.ofMillis(20);
+        private int sampleSize = 1000;
+        private int recomputeEvery = 100;
+        // hedges allowed per request, and the burst allowed before the ratio kicks in
+        private double maxHedgeRatio = 0.05;
+        private int maxTokens = 10;
+    }
+}
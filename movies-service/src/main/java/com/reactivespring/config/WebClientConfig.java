@@ -1,15 +1,81 @@
 package com.reactivespring.config;
 
+import com.reactivespring.tracing.TracingExchangeFilterFunction;
+import io.netty.channel.ChannelOption;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
 
+// One WebClient (and one connection pool) per downstream, so a slow service can only exhaust its own pool. Both are
+// named after the downstream : pool gauges (reactor.netty.connection.provider.*) and the downstream tag of
+// http.client.requests
 @Configuration
+@EnableConfigurationProperties(RestClientProperties.class)
+@Slf4j
 public class WebClientConfig {
 
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider moviesInfoConnectionProvider(RestClientProperties restClientProperties) {
+        return connectionProvider("movies-info", restClientProperties.getMoviesInfo());
+    }
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider reviewsConnectionProvider(RestClientProperties restClientProperties) {
+        return connectionProvider("reviews", restClientProperties.getReviews());
+    }
+
+    @Bean
+    public WebClient moviesInfoWebClient(WebClient.Builder builder, ConnectionProvider moviesInfoConnectionProvider,
+                                         RestClientProperties restClientProperties,
+                                         TracingExchangeFilterFunction tracingExchangeFilterFunction) {
+        return webClient("movies-info", builder, moviesInfoConnectionProvider, restClientProperties.getMoviesInfo(),
+                tracingExchangeFilterFunction);
+    }
+
     @Bean
-    public WebClient webClient(WebClient.Builder builder) {
-            return builder.build();
+    public WebClient reviewsWebClient(WebClient.Builder builder, ConnectionProvider reviewsConnectionProvider,
+                                      RestClientProperties restClientProperties,
+                                      TracingExchangeFilterFunction tracingExchangeFilterFunction) {
+        return webClient("reviews", builder, reviewsConnectionProvider, restClientProperties.getReviews(),
+                tracingExchangeFilterFunction);
     }
 
+    private static ConnectionProvider connectionProvider(String name, RestClientProperties.Downstream downstream) {
+        log.info("Connection pool {} : {}", name, downstream);
+        return ConnectionProvider.builder(name)
+                .maxConnections(downstream.getMaxConnections())
+                .pendingAcquireMaxCount(downstream.getPendingAcquireMaxCount())
+                .pendingAcquireTimeout(downstream.getPendingAcquireTimeout())
+                .maxIdleTime(downstream.getMaxIdleTime())
+                .maxLifeTime(downstream.getMaxLifeTime())
+                .evictInBackground(downstream.getEvictionInterval())
+                // active, idle, pending and total connections gauges, in the global registry Boot publishes
+                .metrics(true)
+                .build();
+    }
+
+    private static WebClient webClient(String name, WebClient.Builder builder, ConnectionProvider connectionProvider,
+                                       RestClientProperties.Downstream downstream,
+                                       TracingExchangeFilterFunction tracingExchangeFilterFunction) {
+        var httpClient = HttpClient.create(connectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) downstream.getConnectTimeout().toMillis())
+                // default for every request, can be overridden per request through the native HttpClientRequest
+                .responseTimeout(downstream.getResponseTimeout());
+        if (downstream.isH2c()) {
+            httpClient = httpClient.protocol(HttpProtocol.H2C, HttpProtocol.HTTP11);
+        }
+        // builder is a prototype bean, cloned anyway so that the two clients never share customizations
+        return builder.clone()
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .defaultRequest(request -> request.attribute(MetricsConfig.DOWNSTREAM_ATTRIBUTE, name))
+                // traceparent header from the span in the Reactor Context
+                .filter(tracingExchangeFilterFunction)
+                .build();
+    }
 }
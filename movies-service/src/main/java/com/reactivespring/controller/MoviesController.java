@@ -1,36 +1,211 @@
 package com.reactivespring.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.reactivespring.client.MoviesInfoRestClient;
 import com.reactivespring.client.ReviewsRestClient;
 import com.reactivespring.domain.Movie;
+import com.reactivespring.domain.MovieBatchResult;
+import com.reactivespring.domain.ReviewStats;
+import com.reactivespring.exception.MoviesInfoClientException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.DigestUtils;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/v1/movies")
+@Slf4j
 public class MoviesController {
 
     private MoviesInfoRestClient moviesInfoRestClient;
 
     private ReviewsRestClient reviewsRestClient;
 
-    public MoviesController(MoviesInfoRestClient moviesInfoRestClient, ReviewsRestClient reviewsRestClient) {
+    private ObjectMapper objectMapper;
+
+    // parallel : info and reviews are fetched concurrently, sequential : reviews are fetched only after info is found
+    @Value("${movies.aggregation.parallel:true}")
+    private boolean parallelAggregation;
+
+    // max number of ids accepted by a single batch request
+    @Value("${movies.batch.maxIds:200}")
+    private int batchMaxIds;
+
+    // number of ids sent to movies-info-service and movies-review-service in one bulk call
+    @Value("${movies.batch.chunkSize:50}")
+    private int batchChunkSize;
+
+    // max number of chunks being aggregated at the same time for a batch request
+    @Value("${movies.batch.concurrency:4}")
+    private int batchConcurrency;
+
+    // reviews returned with a movie when reviewsLimit is not passed : the full count is in reviewStats.count, the
+    // list itself stays bounded however many reviews the movie has
+    @Value("${movies.reviews.defaultLimit:100}")
+    private int reviewsDefaultLimit;
+
+    @Value("${movies.reviews.defaultSort:newest}")
+    private String reviewsDefaultSort;
+
+    private static final Set<String> REVIEWS_SORTS = Set.of("rating", "newest");
+
+    // Cache-Control of GET /v1/movies/{id} responses (200 and 304), none when empty
+    @Value("${movies.byId.cacheControl:}")
+    private String byIdCacheControl;
+
+    public MoviesController(MoviesInfoRestClient moviesInfoRestClient, ReviewsRestClient reviewsRestClient,
+                            ObjectMapper objectMapper) {
         this.moviesInfoRestClient = moviesInfoRestClient;
         this.reviewsRestClient = reviewsRestClient;
+        this.objectMapper = objectMapper;
     }
 
+    // reviewsLimit and reviewsSort (rating : highest first, newest) : top-N reviews, sorted and limited by
+    // movies-review-service
+    // The ETag is a hash of the json body : a Movie aggregates several documents, so no single version identifies it.
+    // When it matches If-None-Match, WebFlux answers 304 without writing the body
     @GetMapping("/{id}")
-    public Mono<Movie> retrieveMovieById(@PathVariable(value = "id", required = true) String movieId) {
+    public Mono<ResponseEntity<byte[]>> retrieveMovieById(@PathVariable(value = "id", required = true) String movieId,
+                                                          @RequestParam(value = "reviewsLimit", required = false) Integer reviewsLimit,
+                                                          @RequestParam(value = "reviewsSort", required = false) String reviewsSort) {
+        return toReviewsQuery(reviewsLimit, reviewsSort)
+                .flatMap(reviewsQuery -> aggregateMovie(movieId, reviewsQuery.getT1(), reviewsQuery.getT2()))
+                .map(this::toConditionalResponse);
+    }
+
+    // the movie is serialized once : the same bytes are hashed into the ETag and written as the body
+    private ResponseEntity<byte[]> toConditionalResponse(Movie movie) {
+        byte[] body;
+        try {
+            body = objectMapper.writeValueAsBytes(movie);
+        } catch (JsonProcessingException ex) {
+            throw Exceptions.propagate(ex);
+        }
+        var responseBuilder = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .eTag("\"" + DigestUtils.md5DigestAsHex(body) + "\"");
+        if (!byIdCacheControl.isBlank()) {
+            responseBuilder.header(HttpHeaders.CACHE_CONTROL, byIdCacheControl);
+        }
+        return responseBuilder.body(body);
+    }
+
+    // ids can be passed as ?ids=a,b,c or ?ids=a&ids=b. Movies are streamed back chunk by chunk in completion order
+    // (not request order)
+    @GetMapping(params = "ids", produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE})
+    public Flux<MovieBatchResult> retrieveMoviesByIds(@RequestParam(value = "ids") List<String> movieIds,
+                                                      @RequestParam(value = "reviewsLimit", required = false) Integer reviewsLimit,
+                                                      @RequestParam(value = "reviewsSort", required = false) String reviewsSort) {
+        log.info("!!! retrieveMoviesByIds invoked for {} ids !!!", movieIds.size());
+        if (movieIds.size() > batchMaxIds) {
+            return Flux.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "A maximum of " + batchMaxIds + " ids is allowed per request"));
+        }
 
+        // ids are split in chunks and every chunk costs 3 bulk calls (info, reviews, stats) instead of 3 calls per id
+        return toReviewsQuery(reviewsLimit, reviewsSort)
+                .flatMapMany(reviewsQuery -> Flux.fromIterable(movieIds)
+                        .distinct()
+                        .buffer(batchChunkSize)
+                        .flatMap(chunk -> aggregateMovies(chunk, reviewsQuery.getT1(), reviewsQuery.getT2()), batchConcurrency));
+    }
+
+    // (limit, sort) with the defaults applied, 400 when invalid
+    private Mono<Tuple2<Integer, String>> toReviewsQuery(Integer reviewsLimit, String reviewsSort) {
+        var limit = reviewsLimit == null ? reviewsDefaultLimit : reviewsLimit;
+        var sort = reviewsSort == null ? reviewsDefaultSort : reviewsSort;
+        if (limit < 1) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "reviewsLimit must be a Positive value"));
+        }
+        if (!REVIEWS_SORTS.contains(sort)) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "reviewsSort must be one of " + REVIEWS_SORTS));
+        }
+        return Mono.just(Tuples.of(limit, sort));
+    }
+
+    private Mono<Movie> aggregateMovie(String movieId, int reviewsLimit, String reviewsSort) {
+        if (parallelAggregation) {
+            return retrieveMovieByIdParallel(movieId, reviewsLimit, reviewsSort);
+        }
         return moviesInfoRestClient.retrieveMovieInfo(movieId)
                 .flatMap(movieInfo -> {
-                    var reviewsListMono = reviewsRestClient.retrieveReviews(movieId)
+                    var reviewsListMono = reviewsRestClient.retrieveReviews(movieId, reviewsLimit, reviewsSort)
                             .collectList();// collect values from Flux into a Mono<List<>>
 
-                    return reviewsListMono.map(reviews -> new Movie(movieInfo, reviews));
+                    return Mono.zip(reviewsListMono, retrieveReviewStats(movieId))
+                            .map(reviews -> new Movie(movieInfo, reviews.getT1(), reviews.getT2().orElse(null)));
                 });
     }
+
+    private Mono<Movie> retrieveMovieByIdParallel(String movieId, int reviewsLimit, String reviewsSort) {
+        // reviews (and their stats) only need the path movieId, so all calls are subscribed together and latency is max(info, reviews)
+        // instead of info + reviews. zip cancels the other source as soon as one fails, so a 404 (or any error) from
+        // movies-info-service cancels the in-flight reviews request and is propagated to GlobalErrorHandler as before.
+        var reviewsListMono = reviewsRestClient.retrieveReviews(movieId, reviewsLimit, reviewsSort)
+                .collectList();
+
+        return Mono.zip(moviesInfoRestClient.retrieveMovieInfo(movieId), reviewsListMono, retrieveReviewStats(movieId))
+                .map(movie -> new Movie(movie.getT1(), movie.getT2(), movie.getT3().orElse(null)));
+    }
+
+    // a movie without stats is still returned (zip would otherwise complete empty)
+    private Mono<Optional<ReviewStats>> retrieveReviewStats(String movieId) {
+        return reviewsRestClient.retrieveReviewStats(movieId)
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty());
+    }
+
+    private Flux<MovieBatchResult> aggregateMovies(List<String> movieIds, int reviewsLimit, String reviewsSort) {
+        var reviewsByIdMono = reviewsRestClient.retrieveReviews(movieIds, reviewsLimit, reviewsSort);
+        var reviewStatsByIdMono = reviewsRestClient.retrieveReviewStats(movieIds);
+
+        return Mono.zip(moviesInfoRestClient.retrieveMovieInfos(movieIds), reviewsByIdMono, reviewStatsByIdMono)
+                .flatMapIterable(infoAndReviews -> {
+                    var movieInfoById = infoAndReviews.getT1();
+                    var reviewsById = infoAndReviews.getT2();
+                    var reviewStatsById = infoAndReviews.getT3();
+                    return movieIds.stream()
+                            .map(movieId -> {
+                                var movieInfo = movieInfoById.get(movieId);
+                                if (movieInfo == null) {
+                                    return MovieBatchResult.failed(movieId, HttpStatus.NOT_FOUND.value(),
+                                            "No movieInfo available for the passed in Id :" + movieId);
+                                }
+                                var reviews = reviewsById.getOrDefault(movieId, List.of());
+                                return MovieBatchResult.found(movieId, new Movie(movieInfo, reviews, reviewStatsById.get(movieId)));
+                            })
+                            .collect(Collectors.toList());
+                })
+                // a failing chunk is reported on each of its ids, the other chunks carry on
+                .onErrorResume(ex -> Flux.fromIterable(movieIds)
+                        .map(movieId -> toBatchError(movieId, ex)));
+    }
+
+    private static MovieBatchResult toBatchError(String movieId, Throwable ex) {
+        log.error("Exception while aggregating movie {} in batch : {}", movieId, ex.getMessage());
+        if (ex instanceof MoviesInfoClientException) {
+            return MovieBatchResult.failed(movieId, ((MoviesInfoClientException) ex).getStatusCode(), ex.getMessage());
+        }
+        return MovieBatchResult.failed(movieId, HttpStatus.INTERNAL_SERVER_ERROR.value(), ex.getMessage());
+    }
 }
@@ -0,0 +1,49 @@
+package com.reactivespring.controller;
+
+import com.reactivespring.cache.MovieInfoCache;
+import com.reactivespring.limiter.ConcurrencyLimitWebFilter;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/v1/stats")
+public class StatsController {
+
+    private MovieInfoCache movieInfoCache;
+
+    private ConcurrencyLimitWebFilter concurrencyLimitWebFilter;
+
+    public StatsController(MovieInfoCache movieInfoCache, ConcurrencyLimitWebFilter concurrencyLimitWebFilter) {
+        this.movieInfoCache = movieInfoCache;
+        this.concurrencyLimitWebFilter = concurrencyLimitWebFilter;
+    }
+
+    @GetMapping("/moviesinfo-cache")
+    public Mono<Map<String, Object>> movieInfoCacheStats() {
+        var stats = movieInfoCache.stats();
+        Map<String, Object> cacheStats = new LinkedHashMap<>();
+        cacheStats.put("estimatedSize", movieInfoCache.estimatedSize());
+        cacheStats.put("hitCount", stats.hitCount());
+        cacheStats.put("missCount", stats.missCount());
+        cacheStats.put("hitRate", stats.hitRate());
+        cacheStats.put("loadFailureCount", stats.loadFailureCount());
+        cacheStats.put("evictionCount", stats.evictionCount());
+        return Mono.just(cacheStats);
+    }
+
+    @GetMapping("/concurrency-limit")
+    public Mono<Map<String, Object>> concurrencyLimitStats() {
+        var limiter = concurrencyLimitWebFilter.getLimiter();
+        Map<String, Object> limitStats = new LinkedHashMap<>();
+        limitStats.put("limit", limiter.getLimit());
+        limitStats.put("inFlight", limiter.getInFlight());
+        limitStats.put("rejected", limiter.getRejected());
+        limitStats.put("rttNoLoadMillis", limiter.getRttNoLoadNanos() / 1_000_000.0);
+        return Mono.just(limitStats);
+    }
+}
@@ -14,4 +14,10 @@ public class Movie {
 
     private MovieInfo movieInfo;
     private List<Review> reviewList;
+    // aggregated by movies-review-service, null when it could not be fetched
+    private ReviewStats reviewStats;
+
+    public Movie(MovieInfo movieInfo, List<Review> reviewList) {
+        this(movieInfo, reviewList, null);
+    }
 }
@@ -0,0 +1,26 @@
+package com.reactivespring.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// One entry of a batch lookup : either the assembled movie or the per-id error, so a single failing id
+// does not fail the whole batch
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MovieBatchResult {
+
+    private String movieId;
+    private Integer statusCode;
+    private Movie movie;
+    private String errorMessage;
+
+    public static MovieBatchResult found(String movieId, Movie movie) {
+        return new MovieBatchResult(movieId, 200, movie, null);
+    }
+
+    public static MovieBatchResult failed(String movieId, Integer statusCode, String errorMessage) {
+        return new MovieBatchResult(movieId, statusCode, null, errorMessage);
+    }
+}
@@ -1,10 +1,13 @@
 package com.reactivespring.exception;
 
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.server.ResponseStatusException;
 
 @ControllerAdvice
 @Slf4j
@@ -16,6 +19,19 @@ public class GlobalErrorHandler {
         return ResponseEntity.status(ex.getStatusCode()).body(ex.getMessage());
     }
 
+    @ExceptionHandler(ResponseStatusException.class)
+    public ResponseEntity<String> handleResponseStatusException(ResponseStatusException ex) {
+        log.error("Exception caught in handleResponseStatusException() : {} " + ex.getMessage() + ex);
+        return ResponseEntity.status(ex.getRawStatusCode()).body(ex.getReason());
+    }
+
+    // circuit open or bulkhead full for a downstream service : nothing was sent, the caller may retry later
+    @ExceptionHandler({CallNotPermittedException.class, BulkheadFullException.class})
+    public ResponseEntity<String> handleRejectedException(RuntimeException ex) {
+        log.error("Exception caught in handleRejectedException() : {} " + ex.getMessage() + ex);
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(ex.getMessage());
+    }
+
     @ExceptionHandler(RuntimeException.class)
     public ResponseEntity<String> handleServerException(RuntimeException ex) {
         log.error("Exception caught in handleServerException() : {} " + ex.getMessage() + ex);
@@ -0,0 +1,128 @@
+package com.reactivespring.limiter;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Concurrency limit in the style of TCP Vegas : the lowest latency seen (rttNoLoad) is the latency without queueing,
+// so limit * (1 - rttNoLoad / rtt) estimates how many requests are queued (in the WebClient pools, on the event
+// loops). The limit grows while that queue is short and shrinks when it builds up or requests fail with 503/504,
+// before latency collapses for every request. rttNoLoad is reset every probeInterval samples (probeMultiplier *
+// limit, jittered) so that a downstream getting durably slower does not leave the limit stuck at its minimum.
+public class AdaptiveConcurrencyLimiter {
+
+    private final int minLimit;
+    private final int maxLimit;
+    // weight of a new estimate : 1.0 follows every sample, lower values smooth the limit over several samples
+    private final double smoothing;
+    private final int probeMultiplier;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong rejected = new AtomicLong();
+
+    private volatile double limit;
+
+    // guarded by this
+    private long rttNoLoadNanos;
+    private long samplesUntilProbe;
+
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, double smoothing, int probeMultiplier) {
+        if (minLimit < 1 || minLimit > maxLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("Expected 1 <= minLimit <= initialLimit <= maxLimit, got "
+                    + minLimit + ", " + initialLimit + ", " + maxLimit);
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.smoothing = smoothing;
+        this.probeMultiplier = probeMultiplier;
+        this.limit = initialLimit;
+        this.samplesUntilProbe = nextProbe(initialLimit);
+    }
+
+    // false when the limit is reached : the caller rejects the request, nothing to release
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= (int) limit) {
+                rejected.incrementAndGet();
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    // a request that went away (cancelled) says nothing about latency
+    public void release() {
+        inFlight.decrementAndGet();
+    }
+
+    // dropped : the request failed because something was overloaded (503, 504, timeout)
+    public void release(long rttNanos, boolean dropped) {
+        int sampledInFlight = inFlight.getAndDecrement();
+        update(rttNanos, sampledInFlight, dropped);
+    }
+
+    private synchronized void update(long rttNanos, int sampledInFlight, boolean dropped) {
+        if (rttNanos <= 0) {
+            return;
+        }
+        if (--samplesUntilProbe <= 0) {
+            // forget the baseline, the next sample that is not dropped becomes the new one
+            rttNoLoadNanos = 0;
+            samplesUntilProbe = nextProbe(limit);
+        }
+
+        double currentLimit = limit;
+        double log = Math.max(1, Math.log10(currentLimit));
+        double newLimit;
+        if (dropped) {
+            // checked first : a 503 answered right away is fast because no work was done, taken as the baseline it
+            // would make every normal latency look like queueing
+            newLimit = currentLimit - log;
+        } else if (rttNoLoadNanos == 0 || rttNanos < rttNoLoadNanos) {
+            rttNoLoadNanos = rttNanos;
+            return;
+        } else if (sampledInFlight * 2 < currentLimit) {
+            // far below the limit : latency says nothing about whether more would fit
+            return;
+        } else {
+            double queueSize = Math.ceil(currentLimit * (1 - (double) rttNoLoadNanos / rttNanos));
+            double alpha = 3 * log;
+            double beta = 6 * log;
+            if (queueSize <= log) {
+                newLimit = currentLimit + beta;
+            } else if (queueSize < alpha) {
+                newLimit = currentLimit + log;
+            } else if (queueSize > beta) {
+                newLimit = currentLimit - log;
+            } else {
+                return;
+            }
+        }
+        newLimit = (1 - smoothing) * currentLimit + smoothing * newLimit;
+        limit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+    }
+
+    private long nextProbe(double currentLimit) {
+        // jittered, so that instances behind the same load balancer do not probe together
+        return (long) (probeMultiplier * currentLimit * (0.5 + ThreadLocalRandom.current().nextDouble()));
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    public synchronized long getRttNoLoadNanos() {
+        return rttNoLoadNanos;
+    }
+}
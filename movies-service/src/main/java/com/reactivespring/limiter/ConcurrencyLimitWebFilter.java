@@ -0,0 +1,125 @@
+package com.reactivespring.limiter;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.PathContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+// Load shedding at the edge : requests above the adaptive concurrency limit are answered 503 with Retry-After right
+// away, instead of queueing behind saturated WebClient pools where they would time out anyway and slow down the
+// requests already admitted. Runs after the metrics and tracing filters so that shed requests are still counted.
+// excludedPaths (actuator by default) are never limited : health checks and scrapes must answer under overload.
+// Bound to Micrometer as movies.concurrency.limit / movies.concurrency.inflight gauges and movies.concurrency.rejected
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+@Slf4j
+public class ConcurrencyLimitWebFilter implements WebFilter, MeterBinder {
+
+    private final boolean enabled;
+    private final AdaptiveConcurrencyLimiter limiter;
+    private final String retryAfterSeconds;
+    private final List<PathPattern> excludedPaths;
+
+    public ConcurrencyLimitWebFilter(@Value("${concurrencyLimit.enabled:true}") boolean enabled,
+                                     @Value("${concurrencyLimit.initialLimit:20}") int initialLimit,
+                                     @Value("${concurrencyLimit.minLimit:5}") int minLimit,
+                                     @Value("${concurrencyLimit.maxLimit:500}") int maxLimit,
+                                     @Value("${concurrencyLimit.smoothing:0.2}") double smoothing,
+                                     @Value("${concurrencyLimit.probeMultiplier:30}") int probeMultiplier,
+                                     @Value("${concurrencyLimit.retryAfter:1s}") Duration retryAfter,
+                                     @Value("${concurrencyLimit.excludedPaths:/actuator/**}") List<String> excludedPaths) {
+        this.enabled = enabled;
+        this.limiter = new AdaptiveConcurrencyLimiter(initialLimit, minLimit, maxLimit, smoothing, probeMultiplier);
+        // Retry-After is in whole seconds
+        this.retryAfterSeconds = String.valueOf(Math.max(1, (retryAfter.toMillis() + 999) / 1000));
+        this.excludedPaths = excludedPaths.stream()
+                .filter(path -> !path.isBlank())
+                .map(PathPatternParser.defaultInstance::parse)
+                .collect(Collectors.toList());
+        if (enabled) {
+            log.info("Concurrency limit {} (min {}, max {}), excluded paths : {}", initialLimit, minLimit, maxLimit,
+                    excludedPaths);
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        if (!enabled) {
+            return;
+        }
+        Gauge.builder("movies.concurrency.limit", limiter, AdaptiveConcurrencyLimiter::getLimit)
+                .register(registry);
+        Gauge.builder("movies.concurrency.inflight", limiter, AdaptiveConcurrencyLimiter::getInFlight)
+                .register(registry);
+        FunctionCounter.builder("movies.concurrency.rejected", limiter, AdaptiveConcurrencyLimiter::getRejected)
+                .register(registry);
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        if (!enabled || isExcluded(exchange)) {
+            return chain.filter(exchange);
+        }
+        if (!limiter.tryAcquire()) {
+            var response = exchange.getResponse();
+            response.setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+            response.getHeaders().set(HttpHeaders.RETRY_AFTER, retryAfterSeconds);
+            return response.setComplete();
+        }
+        var startNanos = System.nanoTime();
+        return chain.filter(exchange)
+                .doFinally(signalType -> {
+                    if (signalType == SignalType.CANCEL) {
+                        limiter.release();
+                    } else {
+                        limiter.release(System.nanoTime() - startNanos, isDropped(exchange, signalType));
+                    }
+                });
+    }
+
+    public AdaptiveConcurrencyLimiter getLimiter() {
+        return limiter;
+    }
+
+    // 503 (open circuit, full bulkhead) and 504 mean a downstream is overloaded, like an error nobody handled
+    private static boolean isDropped(ServerWebExchange exchange, SignalType signalType) {
+        if (signalType == SignalType.ON_ERROR) {
+            return true;
+        }
+        var statusCode = exchange.getResponse().getRawStatusCode();
+        return statusCode != null
+                && (statusCode == HttpStatus.SERVICE_UNAVAILABLE.value() || statusCode == HttpStatus.GATEWAY_TIMEOUT.value());
+    }
+
+    private boolean isExcluded(ServerWebExchange exchange) {
+        if (excludedPaths.isEmpty()) {
+            return false;
+        }
+        PathContainer path = exchange.getRequest().getPath().pathWithinApplication();
+        for (PathPattern excludedPath : excludedPaths) {
+            if (excludedPath.matches(path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,74 @@
+package com.reactivespring.tracing;
+
+import com.reactivespring.config.MetricsConfig;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Client span of every WebClient call made within a traced request : a child of the span found in the Reactor
+// Context, sent downstream as the traceparent header. Retries and hedges are one span per attempt, a hedge that lost
+// the race shows up as cancelled. The span ends with the response headers, the body is read afterwards
+@Component
+public class TracingExchangeFilterFunction implements ExchangeFilterFunction {
+
+    private static final String URI_TEMPLATE_ATTRIBUTE = "org.springframework.web.reactive.function.client.WebClient.uriTemplate";
+
+    private final SpanExporter spanExporter;
+
+    public TracingExchangeFilterFunction(SpanExporter spanExporter) {
+        this.spanExporter = spanExporter;
+    }
+
+    @Override
+    public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+        return Mono.deferContextual(contextView -> {
+            // calls outside of a request (MovieInfoCacheInvalidator) are not traced
+            if (!contextView.hasKey(TraceContext.class)) {
+                return next.exchange(request);
+            }
+            var span = contextView.get(TraceContext.class).child();
+            var tracedRequest = ClientRequest.from(request)
+                    .header(TraceContext.TRACEPARENT, span.traceparent())
+                    .build();
+            if (!span.isSampled()) {
+                return next.exchange(tracedRequest);
+            }
+            var name = request.method().name() + " " + request.url().getRawPath();
+            var timestampMicros = ChronoUnit.MICROS.between(Instant.EPOCH, Instant.now());
+            var startNanos = System.nanoTime();
+            return next.exchange(tracedRequest)
+                    .doOnSuccess(response -> export(span, name, request, timestampMicros, startNanos,
+                            response != null ? String.valueOf(response.rawStatusCode()) : null, null))
+                    .doOnError(ex -> export(span, name, request, timestampMicros, startNanos, null, "error"))
+                    .doOnCancel(() -> export(span, name, request, timestampMicros, startNanos, null, "cancelled"));
+        });
+    }
+
+    private void export(TraceContext span, String name, ClientRequest request, long timestampMicros, long startNanos,
+                        String statusCode, String failure) {
+        Map<String, String> tags = new LinkedHashMap<>();
+        request.attribute(MetricsConfig.DOWNSTREAM_ATTRIBUTE)
+                .ifPresent(downstream -> tags.put("downstream", downstream.toString()));
+        tags.put("http.url", request.url().toString());
+        // urls built with UriComponentsBuilder are recorded whole as the template, only actual templates are kept
+        request.attribute(URI_TEMPLATE_ATTRIBUTE)
+                .map(Object::toString)
+                .filter(uriTemplate -> uriTemplate.contains("{"))
+                .ifPresent(uriTemplate -> tags.put("http.route", uriTemplate));
+        if (statusCode != null) {
+            tags.put("http.status_code", statusCode);
+        }
+        if (failure != null) {
+            tags.put(failure, "true");
+        }
+        spanExporter.export(span, "CLIENT", name, timestampMicros, (System.nanoTime() - startNanos) / 1000, tags);
+    }
+}
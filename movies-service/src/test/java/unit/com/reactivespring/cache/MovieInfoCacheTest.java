@@ -0,0 +1,146 @@
+package com.reactivespring.cache;
+
+import com.reactivespring.config.RestClientProperties;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.exception.MoviesInfoClientException;
+import com.reactivespring.exception.MoviesInfoServerException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MovieInfoCacheTest {
+
+    private final MovieInfoCache movieInfoCache = new MovieInfoCache(restClientProperties(100));
+
+    private final MovieInfo movieInfo = new MovieInfo("abc", "Batman Begins", 2005,
+            List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15"));
+
+    @DisplayName("ConcurrentMissesShareOneLoad")
+    @Test
+    void test_singleFlight() {
+        // given : a slow loader
+        var loads = new AtomicInteger();
+        var slowLoad = Mono.delay(Duration.ofMillis(100)).thenReturn(movieInfo);
+
+        // when : two concurrent lookups for the same id
+        var first = movieInfoCache.get("abc", movieId -> {
+            loads.incrementAndGet();
+            return slowLoad;
+        });
+        var second = movieInfoCache.get("abc", movieId -> {
+            loads.incrementAndGet();
+            return slowLoad;
+        });
+
+        // then
+        StepVerifier.create(Mono.zip(first, second))
+                .expectNextMatches(movieInfos -> movieInfos.getT1().equals(movieInfos.getT2()))
+                .verifyComplete();
+        assertEquals(1, loads.get());
+        assertEquals(1, movieInfoCache.stats().missCount());
+        assertEquals(1, movieInfoCache.stats().hitCount());
+    }
+
+    @DisplayName("NotFoundIsCached")
+    @Test
+    void test_negativeCaching() {
+        // given
+        var loads = new AtomicInteger();
+
+        // when/then : both lookups fail with 404, but only the first goes to the loader
+        for (int i = 0; i < 2; i++) {
+            StepVerifier.create(movieInfoCache.get("missing", movieId -> {
+                        loads.incrementAndGet();
+                        return Mono.error(new MoviesInfoClientException("No movieInfo available for the passed in Id :" + movieId, 404));
+                    }))
+                    .expectErrorMatches(ex -> ex instanceof MoviesInfoClientException
+                            && ((MoviesInfoClientException) ex).getStatusCode() == 404)
+                    .verify();
+        }
+        assertEquals(1, loads.get());
+    }
+
+    @DisplayName("ServerErrorIsNotCached")
+    @Test
+    void test_serverErrorNotCached() {
+        // given
+        var loads = new AtomicInteger();
+
+        // when/then : a 5xx is propagated and the next call goes to the loader again
+        for (int i = 0; i < 2; i++) {
+            StepVerifier.create(movieInfoCache.get("abc", movieId -> {
+                        loads.incrementAndGet();
+                        return Mono.error(new MoviesInfoServerException("Server exception in MovieInfoService : boom"));
+                    }))
+                    .expectError(MoviesInfoServerException.class)
+                    .verify();
+        }
+        assertEquals(2, loads.get());
+    }
+
+    @DisplayName("StatsAreExportedAsMeters")
+    @Test
+    void test_meters() {
+        // given
+        var meterRegistry = new SimpleMeterRegistry();
+        movieInfoCache.bindTo(meterRegistry);
+
+        // when : one miss then one hit
+        for (int i = 0; i < 2; i++) {
+            StepVerifier.create(movieInfoCache.get("abc", movieId -> Mono.just(movieInfo)))
+                    .expectNext(movieInfo)
+                    .verifyComplete();
+        }
+
+        // then
+        assertEquals(1, meterRegistry.get("cache.gets").tags("cache", "moviesinfo", "result", "miss").functionCounter().count());
+        assertEquals(1, meterRegistry.get("cache.gets").tags("cache", "moviesinfo", "result", "hit").functionCounter().count());
+        assertEquals(1, meterRegistry.get("cache.size").tags("cache", "moviesinfo").gauge().value());
+    }
+
+    @DisplayName("LoadFinishingAfterInvalidationIsNotCached")
+    @Test
+    void test_invalidateDuringLoad() {
+        // given : a load that read the document before it was written, and completes after the change event
+        var staleLoad = Sinks.<MovieInfo>one();
+        var staleLookup = movieInfoCache.get("abc", movieId -> staleLoad.asMono()).toFuture();
+        movieInfoCache.invalidate("abc");
+
+        // when
+        staleLoad.tryEmitValue(movieInfo);
+
+        // then : its caller gets what it read, the next lookup loads the written document again
+        assertEquals(movieInfo, staleLookup.join());
+        var updatedMovieInfo = new MovieInfo("abc", "Batman Begins (updated)", 2005,
+                List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15"));
+        StepVerifier.create(movieInfoCache.get("abc", movieId -> Mono.just(updatedMovieInfo)))
+                .expectNext(updatedMovieInfo)
+                .verifyComplete();
+
+        // same on a reconnection of the change feed (invalidateAll)
+        var staleReload = Sinks.<MovieInfo>one();
+        movieInfoCache.invalidate("abc");
+        movieInfoCache.get("abc", movieId -> staleReload.asMono()).subscribe();
+        movieInfoCache.invalidateAll();
+        staleReload.tryEmitValue(movieInfo);
+        StepVerifier.create(movieInfoCache.get("abc", movieId -> Mono.just(updatedMovieInfo)))
+                .expectNext(updatedMovieInfo)
+                .verifyComplete();
+    }
+
+    private static RestClientProperties restClientProperties(long maximumSize) {
+        var restClientProperties = new RestClientProperties();
+        restClientProperties.getMoviesInfoCache().setMaximumSize(maximumSize);
+        return restClientProperties;
+    }
+}
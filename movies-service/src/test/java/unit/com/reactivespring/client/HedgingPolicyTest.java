@@ -0,0 +1,181 @@
+package com.reactivespring.client;
+
+import com.reactivespring.config.RestClientProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HedgingPolicyTest {
+
+    private HedgingPolicy warmedUpPolicy(int maxTokens) {
+        var settings = new RestClientProperties.HedgingSettings();
+        settings.setEnabled(true);
+        settings.setMinDelay(Duration.ofMillis(20));
+        settings.setSampleSize(10);
+        settings.setRecomputeEvery(10);
+        settings.setMaxTokens(maxTokens);
+        var hedgingPolicy = new HedgingPolicy("movies-info", settings);
+        // fast calls so that the hedge delay ends up on minDelay
+        for (int i = 0; i < 10; i++) {
+            hedgingPolicy.hedge(() -> Mono.just("fast")).block();
+        }
+        return hedgingPolicy;
+    }
+
+    @DisplayName("SlowPrimaryLosesToHedge")
+    @Test
+    void test_hedge_SlowPrimary() {
+        // given
+        var hedgingPolicy = warmedUpPolicy(10);
+        var calls = new AtomicInteger();
+        var primaryCancelled = new AtomicBoolean();
+
+        // when
+        var result = hedgingPolicy.hedge(() -> calls.incrementAndGet() == 1
+                ? Mono.delay(Duration.ofSeconds(5)).thenReturn("primary").doOnCancel(() -> primaryCancelled.set(true))
+                : Mono.just("hedge"));
+
+        // then
+        StepVerifier.create(result)
+                .expectNext("hedge")
+                .verifyComplete();
+        assertTrue(primaryCancelled.get());
+        assertEquals(1, hedgingPolicy.getHedgesFired());
+        assertEquals(1, hedgingPolicy.getHedgesWon());
+    }
+
+    @DisplayName("NoHedgeWithoutBudget")
+    @Test
+    void test_hedge_NoBudget() {
+        // given
+        var hedgingPolicy = warmedUpPolicy(0);
+        var calls = new AtomicInteger();
+
+        // when
+        var result = hedgingPolicy.hedge(() -> {
+            calls.incrementAndGet();
+            return Mono.delay(Duration.ofMillis(200)).thenReturn("primary");
+        });
+
+        // then
+        StepVerifier.create(result)
+                .expectNext("primary")
+                .verifyComplete();
+        assertEquals(1, calls.get());
+        assertEquals(0, hedgingPolicy.getHedgesFired());
+    }
+
+    @DisplayName("FailedHedgeKeepsPrimary")
+    @Test
+    void test_hedge_HedgeFails() {
+        // given
+        var hedgingPolicy = warmedUpPolicy(10);
+        var calls = new AtomicInteger();
+
+        // when
+        var result = hedgingPolicy.hedge(() -> calls.incrementAndGet() == 1
+                ? Mono.delay(Duration.ofMillis(200)).thenReturn("primary")
+                : Mono.<String>error(new RuntimeException("boom")));
+
+        // then
+        StepVerifier.create(result)
+                .expectNext("primary")
+                .verifyComplete();
+        assertEquals(1, hedgingPolicy.getHedgesFired());
+        assertEquals(0, hedgingPolicy.getHedgesWon());
+    }
+
+    @DisplayName("HedgeDelayStableUnderSustainedHedging")
+    @Test
+    void test_hedge_DelayStable() {
+        // given : every call takes ~30ms, and the hedge budget allows a hedge per request
+        var settings = new RestClientProperties.HedgingSettings();
+        settings.setEnabled(true);
+        settings.setMinDelay(Duration.ofMillis(1));
+        settings.setSampleSize(10);
+        settings.setRecomputeEvery(10);
+        settings.setMaxHedgeRatio(1.0);
+        settings.setMaxTokens(100);
+        var hedgingPolicy = new HedgingPolicy("movies-info", settings);
+        for (int i = 0; i < 10; i++) {
+            hedgingPolicy.hedge(() -> Mono.delay(Duration.ofMillis(30)).thenReturn("primary")).block();
+        }
+        var initialDelay = hedgingPolicy.getHedgeDelay();
+
+        // when : stuck primaries, every request is answered by its hedge ~30ms after it was sent
+        for (int i = 0; i < 30; i++) {
+            var calls = new AtomicInteger();
+            StepVerifier.create(hedgingPolicy.hedge(() -> calls.incrementAndGet() == 1
+                            ? Mono.<String>never()
+                            : Mono.delay(Duration.ofMillis(30)).thenReturn("hedge")))
+                    .expectNext("hedge")
+                    .verifyComplete();
+        }
+
+        // then : the delay still reflects the ~30ms calls, cancelled primaries did not move it
+        assertEquals(30, hedgingPolicy.getHedgesWon());
+        var hedgeDelay = hedgingPolicy.getHedgeDelay();
+        assertTrue(hedgeDelay.compareTo(Duration.ofMillis(30)) >= 0, "hedge delay " + hedgeDelay);
+        assertTrue(hedgeDelay.compareTo(initialDelay.multipliedBy(2)) < 0,
+                "hedge delay " + hedgeDelay + " drifted from " + initialDelay);
+    }
+
+    @DisplayName("CancelledPrimariesBiasTheDelayLow")
+    @Test
+    void test_hedge_DelayIgnoresCancelledPrimaries() {
+        // given : ~30ms calls, a hedge allowed per request
+        var settings = new RestClientProperties.HedgingSettings();
+        settings.setEnabled(true);
+        settings.setMinDelay(Duration.ofMillis(1));
+        settings.setSampleSize(10);
+        settings.setRecomputeEvery(10);
+        settings.setMaxHedgeRatio(1.0);
+        settings.setMaxTokens(100);
+        var hedgingPolicy = new HedgingPolicy("movies-info", settings);
+        for (int i = 0; i < 10; i++) {
+            hedgingPolicy.hedge(() -> Mono.delay(Duration.ofMillis(30)).thenReturn("primary")).block();
+        }
+
+        // when : primaries now take 300ms, each one loses to a ~30ms hedge and is cancelled
+        for (int i = 0; i < 20; i++) {
+            var calls = new AtomicInteger();
+            StepVerifier.create(hedgingPolicy.hedge(() -> calls.incrementAndGet() == 1
+                            ? Mono.delay(Duration.ofMillis(300)).thenReturn("primary")
+                            : Mono.delay(Duration.ofMillis(30)).thenReturn("hedge")))
+                    .expectNext("hedge")
+                    .verifyComplete();
+        }
+
+        // then : documented bias, the delay follows the answers used (the hedges) and not the 300ms primaries
+        var hedgeDelay = hedgingPolicy.getHedgeDelay();
+        assertTrue(hedgeDelay.compareTo(Duration.ofMillis(150)) < 0, "hedge delay " + hedgeDelay);
+    }
+
+    @DisplayName("HedgingMeters")
+    @Test
+    void test_meters() {
+        // given
+        var hedgingPolicy = warmedUpPolicy(10);
+        var registry = new SimpleMeterRegistry();
+        hedgingPolicy.bindTo(registry);
+        var calls = new AtomicInteger();
+
+        // when
+        hedgingPolicy.hedge(() -> calls.incrementAndGet() == 1 ? Mono.<String>never() : Mono.just("hedge")).block();
+
+        // then
+        assertEquals(11.0, registry.get("movies.hedging.requests").tag("downstream", "movies-info").functionCounter().count());
+        assertEquals(1.0, registry.get("movies.hedging.fired").tag("downstream", "movies-info").functionCounter().count());
+        assertEquals(1.0, registry.get("movies.hedging.won").tag("downstream", "movies-info").functionCounter().count());
+        assertEquals(0.02, registry.get("movies.hedging.delay").tag("downstream", "movies-info").gauge().value());
+    }
+}
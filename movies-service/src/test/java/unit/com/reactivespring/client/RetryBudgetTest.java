@@ -0,0 +1,46 @@
+package com.reactivespring.client;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RetryBudgetTest {
+
+    @DisplayName("BurstThenRatio")
+    @Test
+    void test_retryBudget() {
+        // given : 10% of base traffic, burst of 2
+        var retryBudget = new RetryBudget(0.1, 2);
+
+        // when/then : the burst is spent first
+        assertTrue(retryBudget.tryWithdraw());
+        assertTrue(retryBudget.tryWithdraw());
+        assertFalse(retryBudget.tryWithdraw());
+
+        // 10 requests earn exactly one retry
+        for (int i = 0; i < 9; i++) {
+            retryBudget.deposit();
+        }
+        assertFalse(retryBudget.tryWithdraw());
+        retryBudget.deposit();
+        assertTrue(retryBudget.tryWithdraw());
+    }
+
+    @DisplayName("BalanceIsCapped")
+    @Test
+    void test_retryBudget_Cap() {
+        // given
+        var retryBudget = new RetryBudget(0.5, 1);
+
+        // when
+        for (int i = 0; i < 100; i++) {
+            retryBudget.deposit();
+        }
+
+        // then
+        assertEquals(1.0, retryBudget.availableTokens());
+    }
+}
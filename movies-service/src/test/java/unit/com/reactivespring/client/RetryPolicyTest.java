@@ -0,0 +1,62 @@
+package com.reactivespring.client;
+
+import com.reactivespring.config.RestClientProperties;
+import com.reactivespring.exception.ReviewsClientException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import reactor.core.publisher.Mono;
+import reactor.netty.internal.shaded.reactor.pool.PoolAcquirePendingLimitException;
+import reactor.netty.internal.shaded.reactor.pool.PoolAcquireTimeoutException;
+import reactor.test.StepVerifier;
+
+import java.net.ConnectException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RetryPolicyTest {
+
+    @DisplayName("RetryableErrors")
+    @Test
+    void test_isRetryable() {
+        assertTrue(RetryPolicy.isRetryable(requestException(new ConnectException("Connection refused"))));
+        assertFalse(RetryPolicy.isRetryable(new ReviewsClientException("Bad request")));
+        // local pool saturation
+        assertFalse(RetryPolicy.isRetryable(requestException(new PoolAcquireTimeoutException(Duration.ofSeconds(2)))));
+        assertFalse(RetryPolicy.isRetryable(requestException(new PoolAcquirePendingLimitException(500))));
+    }
+
+    @DisplayName("PoolExhaustedIsNotRetried")
+    @Test
+    void test_retryMono_PoolExhausted() {
+        // given
+        var settings = new RestClientProperties.RetrySettings();
+        settings.setMinBackoff(Duration.ofMillis(1));
+        var retryPolicy = new RetryPolicy("reviews", settings, new RetryBudget(1.0, 10));
+        var attempts = new AtomicInteger();
+
+        // when
+        var call = Mono.defer(() -> {
+            attempts.incrementAndGet();
+            return Mono.error(requestException(new PoolAcquirePendingLimitException(500)));
+        });
+
+        // then : failed once, with the original exception
+        StepVerifier.create(retryPolicy.retryMono(call))
+                .expectError(WebClientRequestException.class)
+                .verify();
+        assertEquals(1, attempts.get());
+    }
+
+    private static WebClientRequestException requestException(Throwable cause) {
+        return new WebClientRequestException(cause, HttpMethod.GET, URI.create("http://localhost:8081/v1/reviews"),
+                new HttpHeaders());
+    }
+}
@@ -0,0 +1,136 @@
+package com.reactivespring.client;
+
+import com.reactivespring.config.ResilienceConfig;
+import com.reactivespring.config.RestClientProperties;
+import com.reactivespring.exception.ReviewsClientException;
+import com.reactivespring.exception.ReviewsServerException;
+import com.reactivespring.logging.SignalLogging;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ReviewsRestClientTest {
+
+    private final AtomicInteger requests = new AtomicInteger();
+
+    // status answered by the stubbed movies-review-service, one per request (the last one repeats)
+    private final Queue<HttpStatus> statuses = new ConcurrentLinkedQueue<>();
+
+    private CircuitBreaker circuitBreaker;
+
+    private WebClient webClient;
+
+    private ReviewsRestClient reviewsRestClient;
+
+    @BeforeEach
+    void setUp() {
+        webClient = WebClient.builder()
+                .exchangeFunction(clientRequest -> {
+                    requests.incrementAndGet();
+                    var status = statuses.size() > 1 ? statuses.poll() : statuses.peek();
+                    return Mono.just(ClientResponse.create(status)
+                            .header("Content-Type", "application/json")
+                            .body(status.is2xxSuccessful() ? "[{\"reviewId\":\"1\",\"movieInfoId\":1,\"rating\":9.0}]" : "boom")
+                            .build());
+                })
+                .build();
+
+        var circuitBreakerSettings = new RestClientProperties.CircuitBreakerSettings();
+        circuitBreakerSettings.setSlidingWindowSize(2);
+        circuitBreakerSettings.setMinimumNumberOfCalls(2);
+        circuitBreaker = ResilienceConfig.circuitBreaker(CircuitBreakerRegistry.ofDefaults(), "reviews", circuitBreakerSettings);
+
+        reviewsRestClient = reviewsRestClient(0);
+    }
+
+    private ReviewsRestClient reviewsRestClient(int maxRetryAttempts) {
+        var retrySettings = new RestClientProperties.RetrySettings();
+        retrySettings.setMaxAttempts(maxRetryAttempts);
+        retrySettings.setMinBackoff(Duration.ofMillis(1));
+        var retryPolicy = new RetryPolicy("reviews", retrySettings, new RetryBudget(0.1, 10));
+
+        var restClientProperties = new RestClientProperties();
+        restClientProperties.setReviewsUrl("http://localhost:8081/v1/reviews");
+
+        return new ReviewsRestClient(webClient, circuitBreaker,
+                ResilienceConfig.bulkhead(BulkheadRegistry.ofDefaults(), "reviews", new RestClientProperties.BulkheadSettings()),
+                retryPolicy, new SignalLogging(false, "X-Debug-Signals", 0.0, List.of()), restClientProperties);
+    }
+
+    @DisplayName("OpenCircuitReturnsNoReviews")
+    @Test
+    void test_retrieveReviews_CircuitOpen() {
+        // given : 2 failures open the circuit
+        statuses.add(HttpStatus.INTERNAL_SERVER_ERROR);
+        for (int i = 0; i < 2; i++) {
+            StepVerifier.create(reviewsRestClient.retrieveReviews("1"))
+                    .expectError(ReviewsServerException.class)
+                    .verify();
+        }
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+
+        // when/then : no request is sent and the reviews come back empty instead of failing
+        StepVerifier.create(reviewsRestClient.retrieveReviews("1"))
+                .verifyComplete();
+        assertEquals(2, requests.get());
+    }
+
+    @DisplayName("ServerErrorIsRetried")
+    @Test
+    void test_retrieveReviews_Retry() {
+        // given : one 503 and then a 200
+        statuses.add(HttpStatus.SERVICE_UNAVAILABLE);
+        statuses.add(HttpStatus.OK);
+        var retryingClient = reviewsRestClient(2);
+
+        // when/then
+        StepVerifier.create(retryingClient.retrieveReviews("1"))
+                .expectNextCount(1)
+                .verifyComplete();
+        assertEquals(2, requests.get());
+    }
+
+    @DisplayName("ClientErrorIsNotRetried")
+    @Test
+    void test_retrieveReviews_NoRetryOn4xx() {
+        // given
+        statuses.add(HttpStatus.BAD_REQUEST);
+        var retryingClient = reviewsRestClient(2);
+
+        // when/then
+        StepVerifier.create(retryingClient.retrieveReviews("1"))
+                .expectError(ReviewsClientException.class)
+                .verify();
+        assertEquals(1, requests.get());
+    }
+
+    @DisplayName("ClientErrorReturnsNoStats")
+    @Test
+    void test_retrieveReviewStats_4xx() {
+        // given : the error body is not ReviewStats and must not be decoded as such
+        statuses.add(HttpStatus.NOT_FOUND);
+        var retryingClient = reviewsRestClient(2);
+
+        // when/then
+        StepVerifier.create(retryingClient.retrieveReviewStats("1"))
+                .verifyComplete();
+        assertEquals(1, requests.get());
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    }
+}
@@ -0,0 +1,58 @@
+package com.reactivespring.config;
+
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.net.URI;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MetricsConfigTest {
+
+    private final MetricsConfig metricsConfig = new MetricsConfig();
+
+    @DisplayName("DownstreamTag")
+    @Test
+    void test_webClientExchangeTags() {
+        // given
+        var tagsProvider = metricsConfig.webClientExchangeTagsProvider();
+        // a url built with UriComponentsBuilder : WebClient records it whole as the uri template
+        var url = "http://localhost:8081/v1/reviews?movieInfoId=1&limit=100&sort=newest";
+        var request = ClientRequest.create(HttpMethod.GET, URI.create(url))
+                .attribute(WebClient.class.getName() + ".uriTemplate", url)
+                .attribute(MetricsConfig.DOWNSTREAM_ATTRIBUTE, "reviews")
+                .build();
+        var response = ClientResponse.create(HttpStatus.SERVICE_UNAVAILABLE).build();
+
+        // when
+        var tags = Tags.of(tagsProvider.tags(request, response, null));
+
+        // then : default tags are kept, without the query string in uri
+        assertTrue(tags.stream().anyMatch(Tag.of("downstream", "reviews")::equals));
+        assertTrue(tags.stream().anyMatch(Tag.of("outcome", "SERVER_ERROR")::equals));
+        assertTrue(tags.stream().anyMatch(Tag.of("uri", "/v1/reviews")::equals));
+    }
+
+    @DisplayName("NoDownstreamAttribute")
+    @Test
+    void test_webClientExchangeTags_None() {
+        // given
+        var tagsProvider = metricsConfig.webClientExchangeTagsProvider();
+        var request = ClientRequest.create(HttpMethod.GET, URI.create("http://localhost:8080/v1/movieinfos/1")).build();
+
+        // when : no response, the call failed
+        var tags = Tags.of(tagsProvider.tags(request, null, new IllegalStateException("connection refused")));
+
+        // then
+        assertTrue(tags.stream().anyMatch(Tag.of("downstream", "none")::equals));
+        assertTrue(tags.stream().anyMatch(Tag.of("uri", "/v1/movieinfos/1")::equals));
+        assertTrue(tags.stream().anyMatch(Tag.of("status", "CLIENT_ERROR")::equals));
+    }
+}
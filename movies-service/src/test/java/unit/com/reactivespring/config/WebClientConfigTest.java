@@ -0,0 +1,82 @@
+package com.reactivespring.config;
+
+import com.reactivespring.tracing.SpanExporter;
+import com.reactivespring.tracing.TracingExchangeFilterFunction;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+class WebClientConfigTest {
+
+    private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+            .withUserConfiguration(WebClientConfig.class)
+            .withBean(WebClient.Builder.class, WebClient::builder)
+            .withBean(TracingExchangeFilterFunction.class, () -> new TracingExchangeFilterFunction(mock(SpanExporter.class)));
+
+    @DisplayName("PoolSettingsPerDownstream")
+    @Test
+    void test_restClientProperties_Binding() {
+        contextRunner
+                // same keys as application.yml (restClient.*), only moviesInfo is customized
+                .withPropertyValues(
+                        "restClient.moviesInfoUrl=http://localhost:8080/v1/movieinfos",
+                        "restClient.moviesInfo.maxConnections=7",
+                        "restClient.moviesInfo.pendingAcquireMaxCount=14",
+                        "restClient.moviesInfo.pendingAcquireTimeout=250ms",
+                        "restClient.moviesInfo.maxIdleTime=5s",
+                        "restClient.moviesInfo.maxLifeTime=1m",
+                        "restClient.moviesInfo.evictionInterval=10s",
+                        "restClient.moviesInfo.connectTimeout=300ms",
+                        "restClient.moviesInfo.responseTimeout=1500ms",
+                        "restClient.moviesInfo.h2c=true")
+                .run(context -> {
+                    var restClientProperties = context.getBean(RestClientProperties.class);
+                    var moviesInfo = restClientProperties.getMoviesInfo();
+                    assertEquals("http://localhost:8080/v1/movieinfos", restClientProperties.getMoviesInfoUrl());
+                    assertEquals(7, moviesInfo.getMaxConnections());
+                    assertEquals(14, moviesInfo.getPendingAcquireMaxCount());
+                    assertEquals(Duration.ofMillis(250), moviesInfo.getPendingAcquireTimeout());
+                    assertEquals(Duration.ofSeconds(5), moviesInfo.getMaxIdleTime());
+                    assertEquals(Duration.ofMinutes(1), moviesInfo.getMaxLifeTime());
+                    assertEquals(Duration.ofSeconds(10), moviesInfo.getEvictionInterval());
+                    assertEquals(Duration.ofMillis(300), moviesInfo.getConnectTimeout());
+                    assertEquals(Duration.ofMillis(1500), moviesInfo.getResponseTimeout());
+                    assertTrue(moviesInfo.isH2c());
+
+                    // each downstream gets its own pool, sized from its own settings
+                    assertEquals(7, context.getBean("moviesInfoConnectionProvider", ConnectionProvider.class).maxConnections());
+                    assertEquals(new RestClientProperties.Downstream().getMaxConnections(),
+                            context.getBean("reviewsConnectionProvider", ConnectionProvider.class).maxConnections());
+                    assertEquals(2, context.getBeansOfType(WebClient.class).size());
+                });
+    }
+
+    @DisplayName("MovieInfoCacheSettings")
+    @Test
+    void test_restClientProperties_CacheBinding() {
+        contextRunner
+                .withPropertyValues(
+                        "restClient.moviesInfoCache.maximumSize=50",
+                        "restClient.moviesInfoCache.ttl=1m",
+                        "restClient.moviesInfoCache.invalidation.enabled=true",
+                        "restClient.moviesInfoCache.invalidation.responseTimeout=20s")
+                .run(context -> {
+                    var moviesInfoCache = context.getBean(RestClientProperties.class).getMoviesInfoCache();
+                    assertTrue(moviesInfoCache.isEnabled());
+                    assertEquals(50, moviesInfoCache.getMaximumSize());
+                    assertEquals(Duration.ofMinutes(1), moviesInfoCache.getTtl());
+                    assertEquals(Duration.ofSeconds(30), moviesInfoCache.getNegativeTtl());
+                    assertTrue(moviesInfoCache.getInvalidation().isEnabled());
+                    assertEquals(Duration.ofSeconds(30), moviesInfoCache.getInvalidation().getMaxBackoff());
+                    assertEquals(Duration.ofSeconds(20), moviesInfoCache.getInvalidation().getResponseTimeout());
+                });
+    }
+}
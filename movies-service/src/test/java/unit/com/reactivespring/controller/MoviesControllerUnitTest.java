@@ -1,4 +1,338 @@
 package com.reactivespring.controller;
 
+import com.reactivespring.client.MoviesInfoRestClient;
+import com.reactivespring.client.ReviewsRestClient;
+import com.reactivespring.domain.Movie;
+import com.reactivespring.domain.MovieBatchResult;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewStats;
+import com.reactivespring.exception.MoviesInfoClientException;
+import com.reactivespring.exception.ReviewsServerException;
+import com.reactivespring.tracing.SpanExporter;
+import com.reactivespring.tracing.TraceContext;
+import com.reactivespring.tracing.TracingWebFilter;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.publisher.PublisherProbe;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isA;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@WebFluxTest(controllers = MoviesController.class)
+@AutoConfigureWebTestClient
+@Import(SpanExporter.class)
 public class MoviesControllerUnitTest {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @MockBean
+    private MoviesInfoRestClient moviesInfoRestClientMock;
+
+    @MockBean
+    private ReviewsRestClient reviewsRestClientMock;
+
+    private static final String MOVIES_URL = "/v1/movies";
+
+    @DisplayName("RetrieveMovieById")
+    @Test
+    void test_retrieveMovieById() {
+        // given
+        var movieId = "abc";
+        var movieInfo = new MovieInfo(movieId, "Batman Begins", 2005,
+                List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15"));
+        var reviews = List.of(new Review("1", 1L, "Awesome Movie", 9.0),
+                new Review("2", 1L, "Excellent Movie", 8.0));
+
+        // when
+        when(moviesInfoRestClientMock.retrieveMovieInfo(isA(String.class))).thenReturn(Mono.just(movieInfo));
+        when(reviewsRestClientMock.retrieveReviews(isA(String.class), anyInt(), any())).thenReturn(Flux.fromIterable(reviews));
+        when(reviewsRestClientMock.retrieveReviewStats(isA(String.class)))
+                .thenReturn(Mono.just(new ReviewStats(1L, 2, 8.5, Map.of(8, 1L, 9, 1L))));
+
+        // then
+        webTestClient.get()
+                .uri(MOVIES_URL + "/{id}", movieId)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBody(Movie.class)
+                .consumeWith(movieEntityExchangeResult -> {
+                    var movie = movieEntityExchangeResult.getResponseBody();
+                    assert movie != null;
+                    assertEquals("Batman Begins", movie.getMovieInfo().getName());
+                    assertEquals(2, movie.getReviewList().size());
+                    assertEquals(8.5, movie.getReviewStats().getAverageRating());
+                });
+    }
+
+    @DisplayName("RetrieveMovieById_NotModified")
+    @Test
+    void test_retrieveMovieById_NotModified() {
+        // given
+        var movieId = "abc";
+        var movieInfo = new MovieInfo(movieId, "Batman Begins", 2005,
+                List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15"));
+
+        when(moviesInfoRestClientMock.retrieveMovieInfo(isA(String.class))).thenReturn(Mono.just(movieInfo));
+        when(reviewsRestClientMock.retrieveReviews(isA(String.class), anyInt(), any()))
+                .thenReturn(Flux.just(new Review("1", 1L, "Awesome Movie", 9.0)));
+        when(reviewsRestClientMock.retrieveReviewStats(isA(String.class))).thenReturn(Mono.empty());
+
+        // when : the first read gets the ETag of the aggregated content
+        var eTag = webTestClient.get()
+                .uri(MOVIES_URL + "/{id}", movieId)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectHeader().exists(HttpHeaders.CACHE_CONTROL)
+                .returnResult(Movie.class)
+                .getResponseHeaders()
+                .getETag();
+        assertNotNull(eTag);
+
+        // then : same content, 304 without body
+        webTestClient.get()
+                .uri(MOVIES_URL + "/{id}", movieId)
+                .header(HttpHeaders.IF_NONE_MATCH, eTag)
+                .exchange()
+                .expectStatus()
+                .isNotModified()
+                .expectBody()
+                .isEmpty();
+
+        // a new review changes the ETag
+        when(reviewsRestClientMock.retrieveReviews(isA(String.class), anyInt(), any()))
+                .thenReturn(Flux.just(new Review("1", 1L, "Awesome Movie", 9.0), new Review("2", 1L, "Meh", 5.0)));
+        webTestClient.get()
+                .uri(MOVIES_URL + "/{id}", movieId)
+                .header(HttpHeaders.IF_NONE_MATCH, eTag)
+                .exchange()
+                .expectStatus()
+                .isOk();
+    }
+
+    @DisplayName("RetrieveMovieById_TraceContext")
+    @Test
+    void test_retrieveMovieById_TraceContext() {
+        // given
+        var movieId = "abc";
+        var movieInfo = new MovieInfo(movieId, "Batman Begins", 2005,
+                List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15"));
+        var traceparent = "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01";
+        var clientContext = new AtomicReference<TraceContext>();
+
+        when(moviesInfoRestClientMock.retrieveMovieInfo(isA(String.class)))
+                .thenReturn(Mono.deferContextual(contextView -> {
+                    clientContext.set(contextView.get(TraceContext.class));
+                    return Mono.just(movieInfo);
+                }));
+        when(reviewsRestClientMock.retrieveReviews(isA(String.class), anyInt(), any())).thenReturn(Flux.empty());
+        when(reviewsRestClientMock.retrieveReviewStats(isA(String.class))).thenReturn(Mono.empty());
+
+        // when
+        webTestClient.get()
+                .uri(MOVIES_URL + "/{id}", movieId)
+                .header(TraceContext.TRACEPARENT, traceparent)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectHeader()
+                .valueEquals(TracingWebFilter.TRACE_ID_HEADER, "4bf92f3577b34da6a3ce929d0e0e4736");
+
+        // then : the rest clients see the server span, a child of the caller's span, through the Reactor Context
+        var serverSpan = clientContext.get();
+        assertNotNull(serverSpan);
+        assertEquals("4bf92f3577b34da6a3ce929d0e0e4736", serverSpan.getTraceId());
+        assertEquals("00f067aa0ba902b7", serverSpan.getParentSpanId());
+        assertTrue(serverSpan.isSampled());
+    }
+
+    @DisplayName("RetrieveMovieById_TopReviews")
+    @Test
+    void test_retrieveMovieById_TopReviews() {
+        // given
+        var movieId = "abc";
+        var movieInfo = new MovieInfo(movieId, "Batman Begins", 2005,
+                List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15"));
+        var topReview = new Review("1", 1L, "Awesome Movie", 9.5);
+
+        // when : limit and sort are passed down to movies-review-service
+        when(moviesInfoRestClientMock.retrieveMovieInfo(isA(String.class))).thenReturn(Mono.just(movieInfo));
+        when(reviewsRestClientMock.retrieveReviews(eq(movieId), eq(1), eq("rating"))).thenReturn(Flux.just(topReview));
+        when(reviewsRestClientMock.retrieveReviewStats(isA(String.class)))
+                .thenReturn(Mono.just(new ReviewStats(1L, 50000, 7.5, Map.of(9, 1L))));
+
+        // then : one review in the list, the total in the stats
+        webTestClient.get()
+                .uri(MOVIES_URL + "/{id}?reviewsLimit=1&reviewsSort=rating", movieId)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBody()
+                .jsonPath("$.reviewList.length()").isEqualTo(1)
+                .jsonPath("$.reviewStats.count").isEqualTo(50000);
+
+        webTestClient.get()
+                .uri(MOVIES_URL + "/{id}?reviewsSort=worst", movieId)
+                .exchange()
+                .expectStatus()
+                .isBadRequest();
+    }
+
+    @DisplayName("RetrieveMovieById_WithoutStats")
+    @Test
+    void test_retrieveMovieById_NoStats() {
+        // given : stats could not be fetched
+        var movieId = "abc";
+        var movieInfo = new MovieInfo(movieId, "Batman Begins", 2005,
+                List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15"));
+
+        // when
+        when(moviesInfoRestClientMock.retrieveMovieInfo(isA(String.class))).thenReturn(Mono.just(movieInfo));
+        when(reviewsRestClientMock.retrieveReviews(isA(String.class), anyInt(), any())).thenReturn(Flux.empty());
+        when(reviewsRestClientMock.retrieveReviewStats(isA(String.class))).thenReturn(Mono.empty());
+
+        // then : the movie is still returned
+        webTestClient.get()
+                .uri(MOVIES_URL + "/{id}", movieId)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBody(Movie.class)
+                .consumeWith(movieEntityExchangeResult -> {
+                    var movie = movieEntityExchangeResult.getResponseBody();
+                    assert movie != null;
+                    assertEquals("Batman Begins", movie.getMovieInfo().getName());
+                    assertNull(movie.getReviewStats());
+                });
+    }
+
+    @DisplayName("RetrieveMovieById_NotFound_CancelsReviews")
+    @Test
+    void test_retrieveMovieById_NotFound() {
+        // given : info call fails after a short delay while reviews never complete
+        var movieId = "abc";
+        PublisherProbe<Review> reviewsProbe = PublisherProbe.of(Flux.never());
+
+        // when
+        when(moviesInfoRestClientMock.retrieveMovieInfo(isA(String.class)))
+                .thenReturn(Mono.delay(Duration.ofMillis(50))
+                        .then(Mono.error(new MoviesInfoClientException("No movieInfo available for the passed in Id :" + movieId, 404))));
+        when(reviewsRestClientMock.retrieveReviews(isA(String.class), anyInt(), any())).thenReturn(reviewsProbe.flux());
+        when(reviewsRestClientMock.retrieveReviewStats(isA(String.class))).thenReturn(Mono.never());
+
+        // then
+        webTestClient.get()
+                .uri(MOVIES_URL + "/{id}", movieId)
+                .exchange()
+                .expectStatus()
+                .isNotFound();
+
+        reviewsProbe.assertWasSubscribed();
+        assertTrue(reviewsProbe.wasCancelled(), "in-flight reviews request should be cancelled");
+    }
+
+    @DisplayName("RetrieveMoviesByIds_PerIdErrors")
+    @Test
+    void test_retrieveMoviesByIds() {
+        // given : "1" is found and "2" is missing in movies-info-service, both are fetched in one chunk
+        var movieInfo = new MovieInfo("1", "Batman Begins", 2005,
+                List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15"));
+
+        // when
+        when(moviesInfoRestClientMock.retrieveMovieInfos(anyList())).thenReturn(Mono.just(Map.of("1", movieInfo)));
+        when(reviewsRestClientMock.retrieveReviews(anyList(), anyInt(), any()))
+                .thenReturn(Mono.just(Map.of("1", List.of(new Review("1", 1L, "Awesome Movie", 9.0)), "2", List.of())));
+        when(reviewsRestClientMock.retrieveReviewStats(anyList()))
+                .thenReturn(Mono.just(Map.of("1", new ReviewStats(1L, 1, 9.0, Map.of(9, 1L)))));
+
+        // then
+        webTestClient.get()
+                .uri(uriBuilder -> uriBuilder.path(MOVIES_URL)
+                        .queryParam("ids", "1,2,1")
+                        .build())
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBodyList(MovieBatchResult.class)
+                .hasSize(2)
+                .value(results -> {
+                    var found = results.stream().filter(result -> result.getMovieId().equals("1")).findFirst().orElseThrow();
+                    var missing = results.stream().filter(result -> result.getMovieId().equals("2")).findFirst().orElseThrow();
+                    assertEquals(200, found.getStatusCode());
+                    assertEquals(1, found.getMovie().getReviewList().size());
+                    assertEquals(404, missing.getStatusCode());
+                });
+
+        verify(moviesInfoRestClientMock, times(1)).retrieveMovieInfos(List.of("1", "2"));
+    }
+
+    @DisplayName("RetrieveMoviesByIds_ChunkError")
+    @Test
+    void test_retrieveMoviesByIds_ChunkError() {
+        // when : reviews bulk call fails for the chunk
+        when(moviesInfoRestClientMock.retrieveMovieInfos(anyList())).thenReturn(Mono.just(Map.of()));
+        when(reviewsRestClientMock.retrieveReviews(anyList(), anyInt(), any()))
+                .thenReturn(Mono.error(new ReviewsServerException("Server exception in ReviewService : boom")));
+        when(reviewsRestClientMock.retrieveReviewStats(anyList())).thenReturn(Mono.just(Map.of()));
+
+        // then : every id of the chunk is reported as failed, the response itself succeeds
+        webTestClient.get()
+                .uri(uriBuilder -> uriBuilder.path(MOVIES_URL)
+                        .queryParam("ids", "1,2")
+                        .build())
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBodyList(MovieBatchResult.class)
+                .hasSize(2)
+                .value(results -> results.forEach(result -> assertEquals(500, result.getStatusCode())));
+    }
+
+    @DisplayName("RetrieveMoviesByIds_TooManyIds")
+    @Test
+    void test_retrieveMoviesByIds_TooManyIds() {
+        // given
+        var ids = String.join(",", Collections.nCopies(201, "1"));
+
+        // then
+        webTestClient.get()
+                .uri(uriBuilder -> uriBuilder.path(MOVIES_URL)
+                        .queryParam("ids", ids)
+                        .build())
+                .exchange()
+                .expectStatus()
+                .isBadRequest();
+    }
 }
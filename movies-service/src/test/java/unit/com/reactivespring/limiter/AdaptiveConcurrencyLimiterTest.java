@@ -0,0 +1,128 @@
+package com.reactivespring.limiter;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    private static final long BASELINE = TimeUnit.MILLISECONDS.toNanos(10);
+
+    @DisplayName("RejectsAboveLimit")
+    @Test
+    void test_tryAcquire() {
+        // given
+        var limiter = new AdaptiveConcurrencyLimiter(2, 1, 10, 1.0, 1000);
+
+        // when/then
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+        assertEquals(1, limiter.getRejected());
+
+        limiter.release();
+        assertTrue(limiter.tryAcquire());
+        assertEquals(2, limiter.getInFlight());
+    }
+
+    @DisplayName("GrowsWhileLatencyStaysAtBaseline")
+    @Test
+    void test_limit_Grows() {
+        // given
+        var limiter = new AdaptiveConcurrencyLimiter(10, 1, 100, 1.0, 1000);
+
+        // when : saturated, no queueing
+        saturate(limiter);
+        for (int i = 0; i < 10; i++) {
+            limiter.release(BASELINE, false);
+        }
+
+        // then
+        assertTrue(limiter.getLimit() > 10, "limit " + limiter.getLimit());
+        assertEquals(BASELINE, limiter.getRttNoLoadNanos());
+    }
+
+    @DisplayName("ShrinksWhenRequestsQueue")
+    @Test
+    void test_limit_Shrinks() {
+        // given
+        var limiter = new AdaptiveConcurrencyLimiter(20, 1, 100, 1.0, 1000);
+        saturate(limiter);
+        limiter.release(BASELINE, false);
+
+        // when : latency 10x the baseline
+        limiter.release(BASELINE * 10, false);
+
+        // then
+        assertTrue(limiter.getLimit() < 20, "limit " + limiter.getLimit());
+    }
+
+    @DisplayName("ShrinksOnDropsDownToMinLimit")
+    @Test
+    void test_limit_Dropped() {
+        // given
+        var limiter = new AdaptiveConcurrencyLimiter(5, 3, 100, 1.0, 1000);
+        limiter.tryAcquire();
+        limiter.release(BASELINE, false);
+
+        // when
+        for (int i = 0; i < 10; i++) {
+            limiter.tryAcquire();
+            limiter.release(BASELINE, true);
+        }
+
+        // then
+        assertEquals(3, limiter.getLimit());
+    }
+
+    @DisplayName("FastDropsDoNotBecomeTheBaseline")
+    @Test
+    void test_limit_FastDropsThenNormalLatency() {
+        // given
+        var limiter = new AdaptiveConcurrencyLimiter(20, 1, 100, 1.0, 1000);
+        limiter.tryAcquire();
+        limiter.release(BASELINE, false);
+
+        // when : a burst of 503s answered 10x faster than any real response, then latency back at the baseline
+        for (int i = 0; i < 5; i++) {
+            limiter.tryAcquire();
+            limiter.release(BASELINE / 10, true);
+        }
+        int limitAfterDrops = limiter.getLimit();
+        for (int i = 0; i < 10; i++) {
+            saturate(limiter);
+            limiter.release(BASELINE, false);
+        }
+
+        // then : the drops shrank the limit, normal latencies are not read as queueing behind a 1ms baseline
+        assertTrue(limitAfterDrops < 20, "limit after drops " + limitAfterDrops);
+        assertEquals(BASELINE, limiter.getRttNoLoadNanos());
+        assertTrue(limiter.getLimit() > limitAfterDrops, "limit " + limiter.getLimit());
+    }
+
+    @DisplayName("IgnoresLatencyWhenFarBelowLimit")
+    @Test
+    void test_limit_AppLimited() {
+        // given
+        var limiter = new AdaptiveConcurrencyLimiter(20, 1, 100, 1.0, 1000);
+        limiter.tryAcquire();
+        limiter.release(BASELINE, false);
+
+        // when : one request at a time, however slow
+        limiter.tryAcquire();
+        limiter.release(BASELINE * 10, false);
+
+        // then
+        assertEquals(20, limiter.getLimit());
+    }
+
+    private static void saturate(AdaptiveConcurrencyLimiter limiter) {
+        while (limiter.tryAcquire()) {
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.reactivespring.limiter;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ConcurrencyLimitWebFilterTest {
+
+    // limit of 1 : a request that never completes holds the only permit
+    private final ConcurrencyLimitWebFilter filter = new ConcurrencyLimitWebFilter(true, 1, 1, 1, 1.0, 30,
+            Duration.ofMillis(1500), List.of("/actuator/**"));
+
+    @DisplayName("ShedsAboveLimit")
+    @Test
+    void test_filter_Rejects() {
+        // given
+        var pending = filter.filter(exchange("/v1/movies/1"), exchange -> Mono.never()).subscribe();
+
+        // when
+        var rejected = exchange("/v1/movies/2");
+        StepVerifier.create(filter.filter(rejected, exchange -> Mono.empty()))
+                .verifyComplete();
+
+        // then
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, rejected.getResponse().getStatusCode());
+        assertEquals("2", rejected.getResponse().getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+
+        // the cancelled request gives its permit back
+        pending.dispose();
+        var admitted = exchange("/v1/movies/3");
+        StepVerifier.create(filter.filter(admitted, exchange -> Mono.empty()))
+                .verifyComplete();
+        assertNull(admitted.getResponse().getStatusCode());
+        assertEquals(0, filter.getLimiter().getInFlight());
+    }
+
+    @DisplayName("ActuatorIsNotLimited")
+    @Test
+    void test_filter_ExcludedPath() {
+        // given
+        var pending = filter.filter(exchange("/v1/movies/1"), exchange -> Mono.never()).subscribe();
+
+        // when
+        var health = exchange("/actuator/health");
+        StepVerifier.create(filter.filter(health, exchange -> Mono.empty()))
+                .verifyComplete();
+
+        // then
+        assertNull(health.getResponse().getStatusCode());
+        pending.dispose();
+    }
+
+    @DisplayName("MetersBoundToTheGivenRegistry")
+    @Test
+    void test_bindTo() {
+        // given : the registry of this context, whatever other filters were bound before
+        new ConcurrencyLimitWebFilter(true, 7, 1, 10, 1.0, 30, Duration.ofSeconds(1), List.of())
+                .bindTo(new SimpleMeterRegistry());
+        var registry = new SimpleMeterRegistry();
+        filter.bindTo(registry);
+
+        // when
+        var pending = filter.filter(exchange("/v1/movies/1"), exchange -> Mono.never()).subscribe();
+        StepVerifier.create(filter.filter(exchange("/v1/movies/2"), exchange -> Mono.empty()))
+                .verifyComplete();
+
+        // then
+        assertEquals(1.0, registry.get("movies.concurrency.limit").gauge().value());
+        assertEquals(1.0, registry.get("movies.concurrency.inflight").gauge().value());
+        assertEquals(1.0, registry.get("movies.concurrency.rejected").functionCounter().count());
+        pending.dispose();
+    }
+
+    private static MockServerWebExchange exchange(String path) {
+        return MockServerWebExchange.from(MockServerHttpRequest.get(path));
+    }
+}
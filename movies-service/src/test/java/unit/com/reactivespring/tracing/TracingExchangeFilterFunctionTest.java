@@ -0,0 +1,72 @@
+package com.reactivespring.tracing;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TracingExchangeFilterFunctionTest {
+
+    private final TracingExchangeFilterFunction tracingExchangeFilterFunction = new TracingExchangeFilterFunction(
+            new SpanExporter("movies-service", "none", "http://localhost:9411/api/v2/spans", 100, 16, Duration.ofSeconds(1),
+                    Duration.ofSeconds(5)));
+
+    private final ClientRequest request = ClientRequest.create(HttpMethod.GET, URI.create("http://localhost:8080/v1/movieinfos/1"))
+            .build();
+
+    @DisplayName("TraceparentFromReactorContext")
+    @Test
+    void test_filter() {
+        // given
+        var serverSpan = TraceContext.fromTraceparent("00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01");
+        var sentRequest = new AtomicReference<ClientRequest>();
+
+        // when
+        var response = tracingExchangeFilterFunction.filter(request, clientRequest -> {
+                    sentRequest.set(clientRequest);
+                    return Mono.just(ClientResponse.create(HttpStatus.OK).build());
+                })
+                .contextWrite(context -> context.put(TraceContext.class, serverSpan));
+
+        // then : a client span of the same trace, child of the server span
+        StepVerifier.create(response)
+                .expectNextCount(1)
+                .verifyComplete();
+        var clientSpan = TraceContext.fromTraceparent(sentRequest.get().headers().getFirst(TraceContext.TRACEPARENT));
+        assertEquals(serverSpan.getTraceId(), clientSpan.getTraceId());
+        assertNotEquals(serverSpan.getSpanId(), clientSpan.getSpanId());
+        assertTrue(clientSpan.isSampled());
+    }
+
+    @DisplayName("NoTraceOutsideOfARequest")
+    @Test
+    void test_filter_NoTraceContext() {
+        // given
+        var sentRequest = new AtomicReference<ClientRequest>();
+
+        // when
+        var response = tracingExchangeFilterFunction.filter(request, clientRequest -> {
+            sentRequest.set(clientRequest);
+            return Mono.just(ClientResponse.create(HttpStatus.OK).build());
+        });
+
+        // then
+        StepVerifier.create(response)
+                .expectNextCount(1)
+                .verifyComplete();
+        assertFalse(sentRequest.get().headers().containsKey(TraceContext.TRACEPARENT));
+    }
+}
@@ -0,0 +1,72 @@
+package com.learnreactiveprogramming.benchmark;
+
+import com.learnreactiveprogramming.service.FluxAndMonoGeneratorService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static com.learnreactiveprogramming.benchmark.Pipelines.ELEMENTS;
+import static com.learnreactiveprogramming.benchmark.Pipelines.drainAsync;
+import static com.learnreactiveprogramming.benchmark.Pipelines.names;
+
+// flatMap / flatMapSequential across concurrency and prefetch. sync inners complete on the subscribing thread,
+// async inners are subscribed on a parallel scheduler, like the WebClient calls of the movies-service aggregation
+// complete on event loop threads : that is where concurrency and prefetch change the score
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@OperationsPerInvocation(ELEMENTS)
+public class FlatMapConcurrencyBenchmark {
+
+    @Param({"1", "8", "32", "256"})
+    private int concurrency;
+
+    // requested from each inner Flux
+    @Param({"1", "32", "256"})
+    private int prefetch;
+
+    @Param({"sync", "async"})
+    private String inner;
+
+    private Scheduler scheduler;
+
+    private Function<String, Flux<String>> mapper;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        scheduler = Schedulers.newParallel("bench-inner");
+        mapper = "async".equals(inner)
+                ? name -> FluxAndMonoGeneratorService.splitString(name).subscribeOn(scheduler)
+                : FluxAndMonoGeneratorService::splitString;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        scheduler.dispose();
+    }
+
+    @Benchmark
+    public void flatMap(Blackhole blackhole) {
+        drainAsync(names(ELEMENTS).flatMap(mapper, concurrency, prefetch), blackhole);
+    }
+
+    @Benchmark
+    public void flatMapSequential(Blackhole blackhole) {
+        drainAsync(names(ELEMENTS).flatMapSequential(mapper, concurrency, prefetch), blackhole);
+    }
+}
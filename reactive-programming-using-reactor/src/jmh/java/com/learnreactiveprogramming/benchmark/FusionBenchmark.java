@@ -0,0 +1,89 @@
+package com.learnreactiveprogramming.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.learnreactiveprogramming.benchmark.Pipelines.ELEMENTS;
+import static com.learnreactiveprogramming.benchmark.Pipelines.drain;
+import static com.learnreactiveprogramming.benchmark.Pipelines.drainAsync;
+import static com.learnreactiveprogramming.benchmark.Pipelines.names;
+
+// Fused versus non fused paths : each pair runs the same pipeline, the second one with hide() which turns off
+// operator fusion (no Fuseable / QueueSubscription negotiation) without changing the emitted elements
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@OperationsPerInvocation(ELEMENTS)
+public class FusionBenchmark {
+
+    private Scheduler scheduler;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        scheduler = Schedulers.newSingle("bench-publishOn");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        scheduler.dispose();
+    }
+
+    // micro fusion : filter tries elements through a ConditionalSubscriber, no request(1) per dropped element
+    @Benchmark
+    public void mapFilterFused(Blackhole blackhole) {
+        drain(names(ELEMENTS).map(String::toLowerCase).filter(name -> name.length() > 4), blackhole);
+    }
+
+    @Benchmark
+    public void mapFilterHidden(Blackhole blackhole) {
+        drain(names(ELEMENTS).hide().map(String::toLowerCase).hide().filter(name -> name.length() > 4).hide(), blackhole);
+    }
+
+    // sync queue fusion : publishOn polls range + map directly instead of buffering them in its own queue
+    @Benchmark
+    public void publishOnFused(Blackhole blackhole) {
+        drainAsync(names(ELEMENTS).map(String::toLowerCase).publishOn(scheduler), blackhole);
+    }
+
+    @Benchmark
+    public void publishOnHidden(Blackhole blackhole) {
+        drainAsync(names(ELEMENTS).map(String::toLowerCase).hide().publishOn(scheduler), blackhole);
+    }
+
+    // scalar inners (Mono.just, Mono.empty) are emitted by flatMap without subscribing an inner subscriber
+    @Benchmark
+    public void flatMapScalarInner(Blackhole blackhole) {
+        drain(names(ELEMENTS).flatMap(name -> Mono.just(name.length())), blackhole);
+    }
+
+    @Benchmark
+    public void flatMapHiddenInner(Blackhole blackhole) {
+        drain(names(ELEMENTS).flatMap(name -> Mono.just(name.length()).hide()), blackhole);
+    }
+
+    // concatMap over a Flux source is prefetch + queue fused, over a hidden one it allocates its own queue
+    @Benchmark
+    public void concatMapFused(Blackhole blackhole) {
+        drain(names(ELEMENTS).concatMap(name -> Flux.just(name, name)), blackhole);
+    }
+
+    @Benchmark
+    public void concatMapHidden(Blackhole blackhole) {
+        drain(names(ELEMENTS).hide().concatMap(name -> Flux.just(name, name).hide()), blackhole);
+    }
+}
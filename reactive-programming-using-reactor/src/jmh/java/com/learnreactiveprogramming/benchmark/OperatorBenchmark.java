@@ -0,0 +1,83 @@
+package com.learnreactiveprogramming.benchmark;
+
+import com.learnreactiveprogramming.service.FluxAndMonoGeneratorService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.learnreactiveprogramming.benchmark.Pipelines.ELEMENTS;
+import static com.learnreactiveprogramming.benchmark.Pipelines.drain;
+import static com.learnreactiveprogramming.benchmark.Pipelines.names;
+
+// Cost of the operators shown in FluxAndMonoGeneratorService, on synchronous sources (no .log(), no delay) so that
+// only the operator machinery is measured. map is the baseline every other score compares to
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@OperationsPerInvocation(ELEMENTS)
+public class OperatorBenchmark {
+
+    @Benchmark
+    public void map(Blackhole blackhole) {
+        drain(names(ELEMENTS).map(String::toLowerCase), blackhole);
+    }
+
+    // one inner Flux per name (ANIRUDH -> A, N, I, R, U, D, H)
+    @Benchmark
+    public void flatMap(Blackhole blackhole) {
+        drain(names(ELEMENTS).flatMap(FluxAndMonoGeneratorService::splitString), blackhole);
+    }
+
+    @Benchmark
+    public void concatMap(Blackhole blackhole) {
+        drain(names(ELEMENTS).concatMap(FluxAndMonoGeneratorService::splitString), blackhole);
+    }
+
+    // mergeSequential of the inner Fluxes : flatMap concurrency with concatMap ordering
+    @Benchmark
+    public void flatMapSequential(Blackhole blackhole) {
+        drain(names(ELEMENTS).flatMapSequential(FluxAndMonoGeneratorService::splitString), blackhole);
+    }
+
+    // the per element Mono of the movies-service aggregation (movie info -> reviews)
+    @Benchmark
+    public void flatMapMono(Blackhole blackhole) {
+        drain(names(ELEMENTS).flatMap(FluxAndMonoGeneratorService::splitStringMono), blackhole);
+    }
+
+    @Benchmark
+    public void concat(Blackhole blackhole) {
+        drain(Flux.concat(names(ELEMENTS / 2), names(ELEMENTS / 2)), blackhole);
+    }
+
+    @Benchmark
+    public void merge(Blackhole blackhole) {
+        drain(Flux.merge(names(ELEMENTS / 2), names(ELEMENTS / 2)), blackhole);
+    }
+
+    @Benchmark
+    public void mergeSequential(Blackhole blackhole) {
+        drain(Flux.mergeSequential(names(ELEMENTS / 2), names(ELEMENTS / 2)), blackhole);
+    }
+
+    @Benchmark
+    public void zip(Blackhole blackhole) {
+        drain(Flux.zip(names(ELEMENTS / 2), names(ELEMENTS / 2), (name1, name2) -> name1 + name2), blackhole);
+    }
+
+    // the shape of MoviesController.aggregateMovie : a Mono zipped with a collected Flux, once per element
+    @Benchmark
+    public void monoZipCollectList(Blackhole blackhole) {
+        drain(names(ELEMENTS).flatMap(name -> Mono.zip(Mono.just(name),
+                FluxAndMonoGeneratorService.splitString(name).collectList())), blackhole);
+    }
+}
@@ -0,0 +1,36 @@
+package com.learnreactiveprogramming.benchmark;
+
+import org.openjdk.jmh.infra.Blackhole;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+
+// Sources and sinks shared by the benchmarks
+final class Pipelines {
+
+    // elements emitted by every source : the benchmarks declare @OperationsPerInvocation(ELEMENTS), so the scores and
+    // gc.alloc.rate.norm are per source element
+    static final int ELEMENTS = 10_000;
+
+    // the names of FluxAndMonoGeneratorService
+    private static final String[] NAMES = {"ANIRUDH", "SHILPI", "SHWETA", "MANU"};
+
+    private Pipelines() {
+    }
+
+    static Flux<String> names(int count) {
+        return Flux.range(0, count)
+                .map(index -> NAMES[index % NAMES.length]);
+    }
+
+    // for pipelines that complete on the subscribing thread : no latch, unlike blockLast()
+    static void drain(Flux<?> flux, Blackhole blackhole) {
+        flux.subscribe(blackhole::consume, ex -> {
+            throw Exceptions.propagate(ex);
+        });
+    }
+
+    // for pipelines that hop threads
+    static void drainAsync(Flux<?> flux, Blackhole blackhole) {
+        blackhole.consume(flux.doOnNext(blackhole::consume).blockLast());
+    }
+}